@@ -31,10 +31,12 @@ import com.qiscus.sdk.data.model.QiscusAccount;
 import com.qiscus.sdk.data.model.QiscusChatConfig;
 import com.qiscus.sdk.data.model.QiscusChatRoom;
 import com.qiscus.sdk.data.remote.QiscusApi;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
 import com.qiscus.sdk.event.QiscusUserEvent;
 import com.qiscus.sdk.service.QiscusPusherService;
 import com.qiscus.sdk.ui.QiscusChatActivity;
 import com.qiscus.sdk.ui.fragment.QiscusChatFragment;
+import com.qiscus.sdk.util.QiscusSchedulers;
 import com.vanniktech.emoji.EmojiManager;
 import com.vanniktech.emoji.one.EmojiOneProvider;
 
@@ -48,7 +50,6 @@ import java.util.Set;
 
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * The main class of Qiscus SDK. Init qiscus engine sdk, set qiscus user, start the chatting and all
@@ -64,6 +65,7 @@ public class Qiscus {
     private static QiscusChatConfig chatConfig;
 
     private static String appServer;
+    private static String mqttBrokerUrl;
     private static long heartBeat;
     private static String authorities;
 
@@ -111,8 +113,21 @@ public class Qiscus {
      * @param serverBaseUrl Your qiscus chat engine base url
      */
     public static void initWithCustomServer(Application application, String serverBaseUrl) {
+        initWithCustomServer(application, serverBaseUrl, "ssl://mqtt.qiscus.com:1885");
+    }
+
+    /**
+     * Same as {@link #initWithCustomServer(Application, String)} but with your own MQTT broker too, e.g. when
+     * you host the qiscus chat engine yourself or run against a local broker.
+     *
+     * @param application   Application instance
+     * @param serverBaseUrl Your qiscus chat engine base url
+     * @param mqttBrokerUrl Your MQTT broker url, e.g. ssl://mqtt.myserver.com:1885
+     */
+    public static void initWithCustomServer(Application application, String serverBaseUrl, String mqttBrokerUrl) {
         appInstance = application;
         appServer = serverBaseUrl;
+        Qiscus.mqttBrokerUrl = mqttBrokerUrl;
         applicationContext = appInstance.getApplicationContext();
         appHandler = new Handler(applicationContext.getMainLooper());
         localDataManager = new LocalDataManager();
@@ -121,6 +136,7 @@ public class Qiscus {
         heartBeat = 60000;
         appInstance.registerActivityLifecycleCallbacks(QiscusActivityCallback.INSTANCE);
         authorities = appInstance.getPackageName() + ".qiscus.sdk.provider";
+        QiscusConnectivityMonitor.getInstance().start(applicationContext);
 
         startPusherService();
         QiscusCacheManager.getInstance().setLastChatActivity(false, 0);
@@ -187,6 +203,16 @@ public class Qiscus {
         return appServer;
     }
 
+    /**
+     * Accessor to get the MQTT broker url used for realtime events
+     *
+     * @return Current MQTT broker url
+     */
+    public static String getMqttBrokerUrl() {
+        checkAppIdSetup();
+        return mqttBrokerUrl;
+    }
+
     /**
      * For checking is qiscus user has been setup
      *
@@ -327,7 +353,7 @@ public class Qiscus {
     public static void setFcmToken(String fcmToken) {
         if (hasSetupUser()) {
             QiscusApi.getInstance().registerFcmToken(fcmToken)
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(aVoid -> {
                     }, Throwable::printStackTrace);
@@ -357,7 +383,7 @@ public class Qiscus {
                                 //Do nothing
 //                             }
                         })
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(QiscusSchedulers.network())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(aVoid -> {
                         }, throwable -> {
@@ -493,7 +519,7 @@ public class Qiscus {
          * @param listener Listener of saving user process
          */
         public void save(SetUserListener listener) {
-            save().subscribeOn(Schedulers.io())
+            save().subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(listener::onSuccess, listener::onError);
         }
@@ -598,7 +624,7 @@ public class Qiscus {
          * @param listener Listener of building chat room process
          */
         public void build(ChatBuilderListener listener) {
-            build().subscribeOn(Schedulers.io())
+            build().subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(listener::onSuccess, listener::onError);
         }
@@ -711,7 +737,7 @@ public class Qiscus {
          * @param listener Listener of building chat activity
          */
         public void build(Context context, ChatActivityBuilderListener listener) {
-            build(context).subscribeOn(Schedulers.io())
+            build(context).subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(listener::onSuccess, listener::onError);
         }
@@ -830,7 +856,7 @@ public class Qiscus {
          * @param listener Listener of building chat fragment
          */
         public void build(ChatFragmentBuilderListener listener) {
-            build().subscribeOn(Schedulers.io())
+            build().subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(listener::onSuccess, listener::onError);
         }
@@ -929,7 +955,7 @@ public class Qiscus {
          * @param listener Listener of building chat room process
          */
         public void build(ChatBuilderListener listener) {
-            build().subscribeOn(Schedulers.io())
+            build().subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(listener::onSuccess, listener::onError);
         }
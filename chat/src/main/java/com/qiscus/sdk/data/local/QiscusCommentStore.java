@@ -39,6 +39,8 @@ public interface QiscusCommentStore {
 
     void addOrUpdate(QiscusComment qiscusComment);
 
+    void addOrUpdate(List<QiscusComment> qiscusComments);
+
     void delete(QiscusComment qiscusComment);
 
     QiscusComment getComment(int id, String uniqueId);
@@ -55,6 +57,10 @@ public interface QiscusCommentStore {
 
     Observable<List<QiscusComment>> getObservableOlderCommentsThan(QiscusComment qiscusComment, int topicId, int count);
 
+    List<QiscusComment> getNewerCommentsThan(QiscusComment qiscusComment, int topicId, int count);
+
+    Observable<List<QiscusComment>> getObservableNewerCommentsThan(QiscusComment qiscusComment, int topicId, int count);
+
     QiscusComment getLatestComment();
 
     QiscusComment getLatestComment(int roomId);
@@ -442,6 +442,22 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
         }
     }
 
+    @Override
+    public void addOrUpdate(List<QiscusComment> qiscusComments) {
+        //Writes of every comment join this transaction, so the batch is committed once
+        sqLiteDatabase.beginTransaction();
+        try {
+            for (QiscusComment qiscusComment : qiscusComments) {
+                addOrUpdate(qiscusComment);
+            }
+            sqLiteDatabase.setTransactionSuccessful();
+        } catch (Exception e) {
+            e.printStackTrace();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
     @Override
     public void addOrUpdateLocalPath(int topicId, int commentId, String localPath) {
         if (!isContainsFileOfComment(commentId)) {
@@ -589,6 +605,32 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
                 + QiscusDb.CommentTable.COLUMN_TIME + " <= " + qiscusComment.getTime().getTime() + " "
                 + "ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " DESC "
                 + "LIMIT " + count;
+        return queryCommentsWithSender(query);
+    }
+
+    @Override
+    public Observable<List<QiscusComment>> getObservableOlderCommentsThan(QiscusComment qiscusComment, int topicId, int count) {
+        return Observable.create(subscriber -> {
+            subscriber.onNext(getOlderCommentsThan(qiscusComment, topicId, count));
+            subscriber.onCompleted();
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    @Override
+    public List<QiscusComment> getNewerCommentsThan(QiscusComment qiscusComment, int topicId, int count) {
+        String query = "SELECT * FROM "
+                + QiscusDb.CommentTable.TABLE_NAME + " WHERE "
+                + QiscusDb.CommentTable.COLUMN_TOPIC_ID + " = " + topicId + " AND "
+                + QiscusDb.CommentTable.COLUMN_TIME + " >= " + qiscusComment.getTime().getTime() + " "
+                + "ORDER BY " + QiscusDb.CommentTable.COLUMN_TIME + " ASC "
+                + "LIMIT " + count;
+        return queryCommentsWithSender(query);
+    }
+
+    /**
+     * Run a query of comments and fill the name and avatar of each sender from the room members
+     */
+    private List<QiscusComment> queryCommentsWithSender(String query) {
         Cursor cursor = sqLiteDatabase.rawQuery(query, null);
         List<QiscusComment> qiscusComments = new ArrayList<>();
         while (cursor.moveToNext()) {
@@ -605,9 +647,9 @@ public class QiscusDataBaseHelper implements QiscusDataStore {
     }
 
     @Override
-    public Observable<List<QiscusComment>> getObservableOlderCommentsThan(QiscusComment qiscusComment, int topicId, int count) {
+    public Observable<List<QiscusComment>> getObservableNewerCommentsThan(QiscusComment qiscusComment, int topicId, int count) {
         return Observable.create(subscriber -> {
-            subscriber.onNext(getOlderCommentsThan(qiscusComment, topicId, count));
+            subscriber.onNext(getNewerCommentsThan(qiscusComment, topicId, count));
             subscriber.onCompleted();
         }, Emitter.BackpressureMode.BUFFER);
     }
@@ -30,9 +30,9 @@ import com.qiscus.sdk.data.remote.QiscusApi;
 import com.qiscus.sdk.ui.QiscusChatActivity;
 import com.qiscus.sdk.ui.QiscusGroupChatActivity;
 import com.qiscus.sdk.util.QiscusDateUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created by zetra. on 9/5/16.
@@ -126,6 +126,13 @@ public class QiscusChatConfig {
     private QiscusNotificationBuilderInterceptor notificationBuilderInterceptor;
 
     private QiscusImageCompressionConfig qiscusImageCompressionConfig = new QiscusImageCompressionConfig();
+    private QiscusPrefetchConfig qiscusPrefetchConfig = new QiscusPrefetchConfig();
+    private QiscusNetworkPolicyConfig qiscusNetworkPolicyConfig = new QiscusNetworkPolicyConfig();
+    private QiscusRealtimeQosConfig qiscusRealtimeQosConfig = new QiscusRealtimeQosConfig();
+    private long typingPublishInterval = 3000;
+    private long typingTimeout = 5000;
+    private boolean enableCompactCommentPayload = false;
+    private int commentWindowPages = 10;
 
     private NotificationTitleHandler notificationTitleHandler = qiscusComment -> qiscusComment.isGroupMessage() ?
             qiscusComment.getRoomName() : qiscusComment.getSender();
@@ -133,7 +140,7 @@ public class QiscusChatConfig {
     private NotificationClickListener notificationClickListener =
             (context, qiscusComment) -> QiscusApi.getInstance()
                     .getChatRoom(qiscusComment.getRoomId())
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .doOnNext(qiscusChatRoom -> {
                         if (!qiscusChatRoom.isGroup()) {
@@ -504,6 +511,63 @@ public class QiscusChatConfig {
         return this;
     }
 
+    public QiscusChatConfig setQiscusPrefetchConfig(QiscusPrefetchConfig qiscusPrefetchConfig) {
+        this.qiscusPrefetchConfig = qiscusPrefetchConfig;
+        return this;
+    }
+
+    public QiscusChatConfig setQiscusNetworkPolicyConfig(QiscusNetworkPolicyConfig qiscusNetworkPolicyConfig) {
+        this.qiscusNetworkPolicyConfig = qiscusNetworkPolicyConfig;
+        return this;
+    }
+
+    public QiscusChatConfig setQiscusRealtimeQosConfig(QiscusRealtimeQosConfig qiscusRealtimeQosConfig) {
+        this.qiscusRealtimeQosConfig = qiscusRealtimeQosConfig;
+        return this;
+    }
+
+    /**
+     * @param typingPublishInterval Minimum time in millis between two "typing" messages of a room
+     * @return config
+     */
+    public QiscusChatConfig setTypingPublishInterval(long typingPublishInterval) {
+        this.typingPublishInterval = typingPublishInterval;
+        return this;
+    }
+
+    /**
+     * @param typingTimeout Time in millis without any keystroke after which "stopped typing" is sent
+     * @return config
+     */
+    public QiscusChatConfig setTypingTimeout(long typingTimeout) {
+        this.typingTimeout = typingTimeout;
+        return this;
+    }
+
+    /**
+     * Also receive realtime comments in the compact binary format. The JSON topic stays subscribed, so comments
+     * keep coming from a server which does not support it, a comment received in both formats is delivered once.
+     *
+     * @param enableCompactCommentPayload true to ask for compact payloads
+     * @return config
+     */
+    public QiscusChatConfig setEnableCompactCommentPayload(boolean enableCompactCommentPayload) {
+        this.enableCompactCommentPayload = enableCompactCommentPayload;
+        return this;
+    }
+
+    /**
+     * Count of pages of 20 comments kept in memory by the chat screen. Pages far from the viewport are removed
+     * while scrolling through a long room and are loaded again from the local store when they are needed.
+     *
+     * @param commentWindowPages Count of pages, at least 3
+     * @return config
+     */
+    public QiscusChatConfig setCommentWindowPages(int commentWindowPages) {
+        this.commentWindowPages = Math.max(3, commentWindowPages);
+        return this;
+    }
+
     @ColorRes
     public int getStatusBarColor() {
         return statusBarColor;
@@ -829,4 +893,32 @@ public class QiscusChatConfig {
     public QiscusImageCompressionConfig getQiscusImageCompressionConfig() {
         return qiscusImageCompressionConfig;
     }
+
+    public QiscusPrefetchConfig getQiscusPrefetchConfig() {
+        return qiscusPrefetchConfig;
+    }
+
+    public QiscusNetworkPolicyConfig getQiscusNetworkPolicyConfig() {
+        return qiscusNetworkPolicyConfig;
+    }
+
+    public QiscusRealtimeQosConfig getQiscusRealtimeQosConfig() {
+        return qiscusRealtimeQosConfig;
+    }
+
+    public long getTypingPublishInterval() {
+        return typingPublishInterval;
+    }
+
+    public long getTypingTimeout() {
+        return typingTimeout;
+    }
+
+    public boolean isEnableCompactCommentPayload() {
+        return enableCompactCommentPayload;
+    }
+
+    public int getCommentWindowPages() {
+        return commentWindowPages;
+    }
 }
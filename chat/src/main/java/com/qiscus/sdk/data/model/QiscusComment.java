@@ -25,9 +25,12 @@ import android.text.TextUtils;
 import android.webkit.MimeTypeMap;
 
 import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
 import com.qiscus.sdk.data.remote.QiscusUrlScraper;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
+import com.qiscus.sdk.util.QiscusDateUtil;
 import com.qiscus.sdk.util.QiscusFileUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
 import com.schinizer.rxunfurl.model.PreviewData;
 
 import java.io.File;
@@ -39,7 +42,6 @@ import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : August 18, 2016
@@ -77,10 +79,24 @@ public class QiscusComment implements Parcelable {
 
     private List<String> urls;
     private PreviewData previewData;
+    private boolean loadingPreviewData;
 
     private String rawType;
     private String extraPayload;
 
+    //Derived from the message and the raw type, computed once and cleared when they change
+    private Type type;
+    private Boolean attachment;
+    private Uri attachmentUri;
+    private String attachmentName;
+    private String attachmentExtension;
+    private String attachmentMimeType;
+    private Boolean multiLine;
+
+    //What the chat adapter reads when binding, computed off the main thread when the comments are loaded
+    private Boolean myComment;
+    private Long dayKey;
+
     protected ProgressListener progressListener;
     protected DownloadingListener downloadingListener;
     protected PlayingAudioListener playingAudioListener;
@@ -188,6 +204,19 @@ public class QiscusComment implements Parcelable {
 
     public void setMessage(String message) {
         this.message = message;
+        clearDerivedData();
+    }
+
+    private void clearDerivedData() {
+        type = null;
+        attachment = null;
+        attachmentUri = null;
+        attachmentName = null;
+        attachmentExtension = null;
+        attachmentMimeType = null;
+        multiLine = null;
+        urls = null;
+        previewData = null;
     }
 
     public String getSender() {
@@ -204,6 +233,7 @@ public class QiscusComment implements Parcelable {
 
     public void setSenderEmail(String senderEmail) {
         this.senderEmail = senderEmail;
+        myComment = null;
     }
 
     public String getSenderAvatar() {
@@ -220,6 +250,7 @@ public class QiscusComment implements Parcelable {
 
     public void setTime(Date time) {
         this.time = time;
+        dayKey = null;
     }
 
     public int getState() {
@@ -264,6 +295,7 @@ public class QiscusComment implements Parcelable {
 
     public void setRawType(String rawType) {
         this.rawType = rawType;
+        type = null;
     }
 
     public String getRawType() {
@@ -279,8 +311,11 @@ public class QiscusComment implements Parcelable {
     }
 
     public boolean isAttachment() {
-        String trimmedMessage = message.trim();
-        return trimmedMessage.startsWith("[file]") && trimmedMessage.endsWith("[/file]");
+        if (attachment == null) {
+            String trimmedMessage = message.trim();
+            attachment = trimmedMessage.startsWith("[file]") && trimmedMessage.endsWith("[/file]");
+        }
+        return attachment;
     }
 
     public Uri getAttachmentUri() {
@@ -288,8 +323,11 @@ public class QiscusComment implements Parcelable {
             throw new RuntimeException("Current comment is not an attachment");
         }
 
-        String uriStr = message.replaceAll("\\[file\\]", "").replaceAll("\\[/file\\]", "").trim();
-        return Uri.parse(uriStr);
+        if (attachmentUri == null) {
+            String uriStr = message.replaceAll("\\[file\\]", "").replaceAll("\\[/file\\]", "").trim();
+            attachmentUri = Uri.parse(uriStr);
+        }
+        return attachmentUri;
     }
 
     public String getAttachmentName() {
@@ -297,6 +335,13 @@ public class QiscusComment implements Parcelable {
             throw new RuntimeException("Current comment is not an attachment");
         }
 
+        if (attachmentName == null) {
+            attachmentName = parseAttachmentName();
+        }
+        return attachmentName;
+    }
+
+    private String parseAttachmentName() {
         int fileNameEndIndex = message.lastIndexOf(" [/file]");
         int fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
 
@@ -317,33 +362,29 @@ public class QiscusComment implements Parcelable {
             throw new RuntimeException("Current comment is not an attachment");
         }
 
-        return QiscusFileUtil.getExtension(getAttachmentName());
+        if (attachmentExtension == null) {
+            attachmentExtension = QiscusFileUtil.getExtension(getAttachmentName());
+        }
+        return attachmentExtension;
     }
 
     public boolean isImage() {
-        if (isAttachment()) {
-
-            String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
-            if (type == null) {
-                return false;
-            } else if (type.contains("image")) {
-                return true;
-            }
-        }
-        return false;
+        return isAttachment() && getAttachmentMimeType().contains("image");
     }
 
     public boolean isAudio() {
-        if (isAttachment()) {
+        return isAttachment() && getAttachmentMimeType().contains("audio");
+    }
 
-            String type = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
-            if (type == null) {
-                return false;
-            } else if (type.contains("audio")) {
-                return true;
-            }
+    /**
+     * @return Mime type of the attachment, empty if it is unknown
+     */
+    private String getAttachmentMimeType() {
+        if (attachmentMimeType == null) {
+            String mimeType = MimeTypeMap.getSingleton().getMimeTypeFromExtension(getExtension());
+            attachmentMimeType = mimeType == null ? "" : mimeType;
         }
-        return false;
+        return attachmentMimeType;
     }
 
     private boolean containsUrl() {
@@ -363,12 +404,17 @@ public class QiscusComment implements Parcelable {
     public void loadLinkPreviewData() {
         if (getType() == Type.LINK) {
             if (previewData != null) {
-                linkPreviewListener.onLinkPreviewReady(this, previewData);
-            } else {
+                if (linkPreviewListener != null) {
+                    linkPreviewListener.onLinkPreviewReady(this, previewData);
+                }
+            } else if (!loadingPreviewData && (!QiscusConnectivityMonitor.getInstance().isSlow()
+                    || Qiscus.getChatConfig().getQiscusNetworkPolicyConfig().isLoadLinkPreviewOnSlowNetwork())) {
+                loadingPreviewData = true;
                 QiscusUrlScraper.getInstance()
                         .generatePreviewData(urls.get(0))
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(QiscusSchedulers.network())
                         .observeOn(AndroidSchedulers.mainThread())
+                        .doOnTerminate(() -> loadingPreviewData = false)
                         .subscribe(previewData -> {
                             this.previewData = previewData;
                             if (linkPreviewListener != null) {
@@ -379,7 +425,56 @@ public class QiscusComment implements Parcelable {
         }
     }
 
+    /**
+     * The type is computed once and kept until the message or the raw type changes
+     *
+     * @return Type of this comment
+     */
     public Type getType() {
+        if (type == null) {
+            type = computeType();
+        }
+        return type;
+    }
+
+    public boolean isMultiLine() {
+        if (multiLine == null) {
+            multiLine = message.contains(System.getProperty("line.separator"));
+        }
+        return multiLine;
+    }
+
+    public boolean isMyComment() {
+        if (myComment == null) {
+            myComment = senderEmail.equals(Qiscus.getQiscusAccount().getEmail());
+        }
+        return myComment;
+    }
+
+    /**
+     * Number of the day this comment was sent, see {@link QiscusDateUtil#getDayKey(Date)}
+     *
+     * @return Day key of the comment time
+     */
+    public long getDayKey() {
+        if (dayKey == null) {
+            dayKey = QiscusDateUtil.getDayKey(time);
+        }
+        return dayKey;
+    }
+
+    /**
+     * Compute the type, the sender and the day of this comment so binding it only reads cached values.
+     * Meant to be called off the main thread before the comment is handed to the adapter.
+     */
+    public void prepareBindData() {
+        getType();
+        isMultiLine();
+        isMyComment();
+        getDayKey();
+    }
+
+    private Type computeType() {
         if (!TextUtils.isEmpty(rawType) && rawType.equals("account_linking")) {
             return Type.ACCOUNT_LINKING;
         } else if (!TextUtils.isEmpty(rawType) && rawType.equals("buttons")) {
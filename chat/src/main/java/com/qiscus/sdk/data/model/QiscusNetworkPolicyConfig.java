@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.model;
+
+/**
+ * Configure how the SDK saves data when the device is on a metered or slow (2G) network.
+ * Downloads the user explicitly asked for are never deferred.
+ */
+public class QiscusNetworkPolicyConfig {
+    private boolean deferBackgroundDownloadOnMetered = true;
+    private boolean prefetchOnMetered = true;
+    private boolean prefetchOnSlowNetwork = false;
+    private boolean loadLinkPreviewOnSlowNetwork = true;
+    private int slowNetworkImageQuality = 50;
+    private long slowNetworkSyncPeriod = 30000;
+
+    public QiscusNetworkPolicyConfig() {
+
+    }
+
+    /**
+     * @param deferBackgroundDownloadOnMetered Hold low priority downloads (e.g. prefetched voice notes) until
+     *                                         an unmetered network is available
+     * @return config
+     */
+    public QiscusNetworkPolicyConfig setDeferBackgroundDownloadOnMetered(boolean deferBackgroundDownloadOnMetered) {
+        this.deferBackgroundDownloadOnMetered = deferBackgroundDownloadOnMetered;
+        return this;
+    }
+
+    public QiscusNetworkPolicyConfig setPrefetchOnMetered(boolean prefetchOnMetered) {
+        this.prefetchOnMetered = prefetchOnMetered;
+        return this;
+    }
+
+    public QiscusNetworkPolicyConfig setPrefetchOnSlowNetwork(boolean prefetchOnSlowNetwork) {
+        this.prefetchOnSlowNetwork = prefetchOnSlowNetwork;
+        return this;
+    }
+
+    public QiscusNetworkPolicyConfig setLoadLinkPreviewOnSlowNetwork(boolean loadLinkPreviewOnSlowNetwork) {
+        this.loadLinkPreviewOnSlowNetwork = loadLinkPreviewOnSlowNetwork;
+        return this;
+    }
+
+    /**
+     * @param slowNetworkImageQuality JPEG quality of uploaded images while on a slow network, the lower of this
+     *                                and {@link QiscusImageCompressionConfig#getQuality()} is used
+     * @return config
+     */
+    public QiscusNetworkPolicyConfig setSlowNetworkImageQuality(int slowNetworkImageQuality) {
+        this.slowNetworkImageQuality = slowNetworkImageQuality;
+        return this;
+    }
+
+    /**
+     * @param slowNetworkSyncPeriod Minimum time between two sync requests in millis while on a slow network
+     * @return config
+     */
+    public QiscusNetworkPolicyConfig setSlowNetworkSyncPeriod(long slowNetworkSyncPeriod) {
+        this.slowNetworkSyncPeriod = slowNetworkSyncPeriod;
+        return this;
+    }
+
+    public boolean isDeferBackgroundDownloadOnMetered() {
+        return deferBackgroundDownloadOnMetered;
+    }
+
+    public boolean isPrefetchOnMetered() {
+        return prefetchOnMetered;
+    }
+
+    public boolean isPrefetchOnSlowNetwork() {
+        return prefetchOnSlowNetwork;
+    }
+
+    public boolean isLoadLinkPreviewOnSlowNetwork() {
+        return loadLinkPreviewOnSlowNetwork;
+    }
+
+    public int getSlowNetworkImageQuality() {
+        return slowNetworkImageQuality;
+    }
+
+    public long getSlowNetworkSyncPeriod() {
+        return slowNetworkSyncPeriod;
+    }
+}
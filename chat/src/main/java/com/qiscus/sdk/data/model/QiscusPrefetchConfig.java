@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.model;
+
+/**
+ * Configure how many comments ahead of the scroll position are warmed up (image thumbnails, voice notes
+ * and link previews), and how much of the network and battery the prefetching may use.
+ */
+public class QiscusPrefetchConfig {
+    private boolean enable = true;
+    private int prefetchCount = 10;
+    private int maxPrefetchCount = 30;
+    private int maxPrefetchPerMinute = 60;
+    private boolean enableOnLowBattery = false;
+    private int lowBatteryLevel = 15;
+
+    public QiscusPrefetchConfig() {
+
+    }
+
+    public QiscusPrefetchConfig setEnable(boolean enable) {
+        this.enable = enable;
+        return this;
+    }
+
+    /**
+     * @param prefetchCount How many comments ahead are prefetched while scrolling slowly
+     * @return config
+     */
+    public QiscusPrefetchConfig setPrefetchCount(int prefetchCount) {
+        this.prefetchCount = prefetchCount;
+        return this;
+    }
+
+    /**
+     * @param maxPrefetchCount How many comments ahead are prefetched at most while flinging
+     * @return config
+     */
+    public QiscusPrefetchConfig setMaxPrefetchCount(int maxPrefetchCount) {
+        this.maxPrefetchCount = maxPrefetchCount;
+        return this;
+    }
+
+    /**
+     * @param maxPrefetchPerMinute The bandwidth budget, maximum prefetch requests started in a minute
+     * @return config
+     */
+    public QiscusPrefetchConfig setMaxPrefetchPerMinute(int maxPrefetchPerMinute) {
+        this.maxPrefetchPerMinute = maxPrefetchPerMinute;
+        return this;
+    }
+
+    /**
+     * @param enableOnLowBattery Keep prefetching while the device is not charging and the battery is low
+     * @return config
+     */
+    public QiscusPrefetchConfig setEnableOnLowBattery(boolean enableOnLowBattery) {
+        this.enableOnLowBattery = enableOnLowBattery;
+        return this;
+    }
+
+    /**
+     * @param lowBatteryLevel Battery percentage below which the battery is considered low
+     * @return config
+     */
+    public QiscusPrefetchConfig setLowBatteryLevel(int lowBatteryLevel) {
+        this.lowBatteryLevel = lowBatteryLevel;
+        return this;
+    }
+
+    public boolean isEnable() {
+        return enable;
+    }
+
+    public int getPrefetchCount() {
+        return prefetchCount;
+    }
+
+    public int getMaxPrefetchCount() {
+        return maxPrefetchCount;
+    }
+
+    public int getMaxPrefetchPerMinute() {
+        return maxPrefetchPerMinute;
+    }
+
+    public boolean isEnableOnLowBattery() {
+        return enableOnLowBattery;
+    }
+
+    public int getLowBatteryLevel() {
+        return lowBatteryLevel;
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.model;
+
+/**
+ * MQTT quality of service used for each kind of realtime event. 0 is at most once, 1 is at least once and
+ * 2 is exactly once, each level costs one more round trip than the previous one. Comments are de-duplicated
+ * by their id on the client, so at least once is enough for them.
+ */
+public class QiscusRealtimeQosConfig {
+    private int commentQos = 1;
+    private int typingQos = 0;
+    private int receiptQos = 1;
+    private int presenceQos = 1;
+
+    public QiscusRealtimeQosConfig() {
+
+    }
+
+    public QiscusRealtimeQosConfig setCommentQos(int commentQos) {
+        this.commentQos = checkQos(commentQos);
+        return this;
+    }
+
+    public QiscusRealtimeQosConfig setTypingQos(int typingQos) {
+        this.typingQos = checkQos(typingQos);
+        return this;
+    }
+
+    /**
+     * @param receiptQos QoS of delivered and read events
+     * @return config
+     */
+    public QiscusRealtimeQosConfig setReceiptQos(int receiptQos) {
+        this.receiptQos = checkQos(receiptQos);
+        return this;
+    }
+
+    /**
+     * @param presenceQos QoS of online status events
+     * @return config
+     */
+    public QiscusRealtimeQosConfig setPresenceQos(int presenceQos) {
+        this.presenceQos = checkQos(presenceQos);
+        return this;
+    }
+
+    public int getCommentQos() {
+        return commentQos;
+    }
+
+    public int getTypingQos() {
+        return typingQos;
+    }
+
+    public int getReceiptQos() {
+        return receiptQos;
+    }
+
+    public int getPresenceQos() {
+        return presenceQos;
+    }
+
+    private static int checkQos(int qos) {
+        if (qos < 0 || qos > 2) {
+            throw new IllegalArgumentException("QoS must be 0, 1 or 2");
+        }
+        return qos;
+    }
+}
@@ -18,6 +18,7 @@ package com.qiscus.sdk.data.remote;
 
 import android.net.Uri;
 import android.support.v4.util.Pair;
+import android.util.Log;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
@@ -32,22 +33,25 @@ import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 
+import okhttp3.Interceptor;
 import okhttp3.MediaType;
 import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
 import okhttp3.internal.Util;
+import okio.Buffer;
 import okio.BufferedSink;
+import okio.GzipSink;
 import okio.Okio;
 import okio.Source;
 import retrofit2.Retrofit;
@@ -60,7 +64,6 @@ import retrofit2.http.POST;
 import retrofit2.http.Query;
 import rx.Emitter;
 import rx.Observable;
-import rx.exceptions.OnErrorThrowable;
 
 /**
  * Created on : August 18, 2016
@@ -72,7 +75,14 @@ import rx.exceptions.OnErrorThrowable;
  */
 public enum QiscusApi {
     INSTANCE;
+    private static final String TAG = QiscusApi.class.getSimpleName();
+    private static final long PARTICIPANTS_REFRESH_PERIOD = 10 * 60 * 1000;
+    //Only the fields read by QiscusApiParser#parseQiscusComment, a server which ignores it sends every field
+    private static final String COMMENT_FIELDS = "id,room_id,topic_id,comment_before_id,message,username,email,"
+            + "user_avatar_url,timestamp,unique_id,unique_temp_id,type,payload";
+
     private final OkHttpClient httpClient;
+    private final Map<Integer, Long> participantsFetchTimes;
 
     private String baseUrl;
     private final Api api;
@@ -80,9 +90,13 @@ public enum QiscusApi {
     QiscusApi() {
         baseUrl = Qiscus.getAppServer();
 
+        participantsFetchTimes = new ConcurrentHashMap<>();
+
+        //OkHttp already asks for gzip responses and decompress them transparently
         httpClient = new OkHttpClient.Builder()
                 .connectTimeout(60, TimeUnit.SECONDS)
                 .readTimeout(60, TimeUnit.SECONDS)
+                .addInterceptor(new GzipRequestInterceptor())
                 .build();
 
         api = new Retrofit.Builder()
@@ -98,6 +112,10 @@ public enum QiscusApi {
         return INSTANCE;
     }
 
+    OkHttpClient getHttpClient() {
+        return httpClient;
+    }
+
     public Observable<QiscusAccount> loginOrRegister(String email, String password, String username, String avatarUrl) {
         return api.loginOrRegister(email, password, username, avatarUrl)
                 .map(QiscusApiParser::parseQiscusAccount);
@@ -114,17 +132,56 @@ public enum QiscusApi {
     }
 
     public Observable<QiscusChatRoom> getChatRoom(int roomId) {
-        return api.getChatRoom(Qiscus.getToken(), roomId)
-                .map(QiscusApiParser::parseQiscusChatRoom);
+        return api.getChatRoom(Qiscus.getToken(), roomId, null, null)
+                .map(QiscusApiParser::parseQiscusChatRoom)
+                .doOnNext(this::onParticipantsFetched);
     }
 
     public Observable<Pair<QiscusChatRoom, List<QiscusComment>>> getChatRoomComments(int roomId) {
-        return api.getChatRoom(Qiscus.getToken(), roomId)
-                .map(QiscusApiParser::parseQiscusChatRoomWithComments);
+        return getChatRoomComments(roomId, 0);
+    }
+
+    /**
+     * Get the room with its latest comments. Participants are only asked again when the ones saved locally
+     * are getting old, and only comments newer than afterCommentId are asked when it is set. A server which
+     * does not support these parameters just returns the full room, which is handled the same way.
+     *
+     * @param roomId         The room id
+     * @param afterCommentId Only comments newer than this, 0 for the latest comments
+     * @return Observable of the room and its comments
+     */
+    public Observable<Pair<QiscusChatRoom, List<QiscusComment>>> getChatRoomComments(int roomId, int afterCommentId) {
+        return Observable.fromCallable(() -> shouldExcludeParticipants(roomId))
+                .flatMap(excludeParticipants -> api.getChatRoom(Qiscus.getToken(), roomId,
+                        excludeParticipants ? true : null, afterCommentId > 0 ? afterCommentId : null))
+                .map(QiscusApiParser::parseQiscusChatRoomWithComments)
+                .doOnNext(roomData -> onParticipantsFetched(roomData.first));
+    }
+
+    private boolean shouldExcludeParticipants(int roomId) {
+        Long lastFetchTime = participantsFetchTimes.get(roomId);
+        if (lastFetchTime == null || System.currentTimeMillis() - lastFetchTime > PARTICIPANTS_REFRESH_PERIOD) {
+            return false;
+        }
+        QiscusChatRoom savedChatRoom = Qiscus.getDataStore().getChatRoom(roomId);
+        return savedChatRoom != null && savedChatRoom.getMember() != null && !savedChatRoom.getMember().isEmpty();
+    }
+
+    private void onParticipantsFetched(QiscusChatRoom qiscusChatRoom) {
+        if (qiscusChatRoom == null) {
+            return;
+        }
+        if (qiscusChatRoom.getMember() != null) {
+            participantsFetchTimes.put(qiscusChatRoom.getId(), System.currentTimeMillis());
+        } else {
+            QiscusChatRoom savedChatRoom = Qiscus.getDataStore().getChatRoom(qiscusChatRoom.getId());
+            qiscusChatRoom.setMember(savedChatRoom != null && savedChatRoom.getMember() != null
+                    ? savedChatRoom.getMember() : new ArrayList<>());
+        }
     }
 
     public Observable<QiscusComment> getComments(int roomId, int topicId, int lastCommentId) {
-        return api.getComments(Qiscus.getToken(), topicId, lastCommentId)
+        return api.getComments(Qiscus.getToken(), topicId, lastCommentId, COMMENT_FIELDS)
                 .flatMap(jsonElement -> Observable.from(jsonElement.getAsJsonObject().get("results")
                         .getAsJsonObject().get("comments").getAsJsonArray()))
                 .map(jsonElement -> QiscusApiParser.parseQiscusComment(jsonElement, roomId, topicId));
@@ -159,7 +216,17 @@ public enum QiscusApi {
         if (latestComment == null || !"Today".equals(QiscusDateUtil.toTodayOrDate(latestComment.getTime()))) {
             return Observable.empty();
         }
-        return api.sync(Qiscus.getToken(), latestComment.getId())
+        return sync(latestComment.getId());
+    }
+
+    /**
+     * Get the comments of every room newer than lastCommentId, failures are logged and complete empty
+     *
+     * @param lastCommentId The newest comment already received
+     * @return Observable of newer comments
+     */
+    public Observable<QiscusComment> sync(int lastCommentId) {
+        return api.sync(Qiscus.getToken(), lastCommentId, COMMENT_FIELDS)
                 .onErrorReturn(throwable -> {
                     throwable.printStackTrace();
                     return null;
@@ -207,54 +274,9 @@ public enum QiscusApi {
     }
 
     public Observable<File> downloadFile(int topicId, String url, String fileName, ProgressListener progressListener) {
-        return Observable.create(subscriber -> {
-            InputStream inputStream = null;
-            FileOutputStream fos = null;
-            try {
-                Request request = new Request.Builder().url(url).build();
-
-                Response response = httpClient.newCall(request).execute();
-
-                File output = new File(QiscusFileUtil.generateFilePath(fileName, topicId));
-                fos = new FileOutputStream(output.getPath());
-                if (!response.isSuccessful()) {
-                    throw new IOException();
-                } else {
-                    ResponseBody responseBody = response.body();
-                    long fileLength = responseBody.contentLength();
-
-                    inputStream = responseBody.byteStream();
-                    byte[] buffer = new byte[4096];
-                    long total = 0;
-                    int count;
-                    while ((count = inputStream.read(buffer)) != -1) {
-                        total += count;
-                        long totalCurrent = total;
-                        if (fileLength > 0) {
-                            progressListener.onProgress((totalCurrent * 100 / fileLength));
-                        }
-                        fos.write(buffer, 0, count);
-                    }
-                    fos.flush();
-
-                    subscriber.onNext(output);
-                    subscriber.onCompleted();
-                }
-            } catch (Exception e) {
-                throw OnErrorThrowable.from(OnErrorThrowable.addValueAsLastCause(e, url));
-            } finally {
-                try {
-                    if (fos != null) {
-                        fos.close();
-                    }
-                    if (inputStream != null) {
-                        inputStream.close();
-                    }
-                } catch (IOException ignored) {
-                    //Do nothing
-                }
-            }
-        }, Emitter.BackpressureMode.BUFFER);
+        return Observable.defer(() -> QiscusDownloadManager.getInstance()
+                .download(url, new File(QiscusFileUtil.generateFilePath(fileName, topicId)),
+                        QiscusDownloadManager.PRIORITY_HIGH, progressListener));
     }
 
     public Observable<QiscusChatRoom> updateChatRoom(int roomId, String name, String avatarUrl, String options) {
@@ -299,12 +321,15 @@ public enum QiscusApi {
 
         @GET("/api/v2/mobile/get_room_by_id")
         Observable<JsonElement> getChatRoom(@Query("token") String token,
-                                            @Query("id") int roomId);
+                                            @Query("id") int roomId,
+                                            @Query("exclude_participants") Boolean excludeParticipants,
+                                            @Query("after_comment_id") Integer afterCommentId);
 
         @GET("/api/v2/mobile/load_comments")
         Observable<JsonElement> getComments(@Query("token") String token,
                                             @Query("topic_id") int topicId,
-                                            @Query("last_comment_id") int lastCommentId);
+                                            @Query("last_comment_id") int lastCommentId,
+                                            @Query("fields") String fields);
 
         @FormUrlEncoded
         @POST("/api/v2/mobile/post_comment")
@@ -317,7 +342,8 @@ public enum QiscusApi {
 
         @GET("/api/v2/mobile/sync")
         Observable<JsonElement> sync(@Query("token") String token,
-                                     @Query("last_received_comment_id") int lastCommentId);
+                                     @Query("last_received_comment_id") int lastCommentId,
+                                     @Query("fields") String fields);
 
         @FormUrlEncoded
         @POST("/api/v2/mobile/update_room")
@@ -382,6 +408,49 @@ public enum QiscusApi {
 
     }
 
+    /**
+     * Gzip form bodies which are big enough to benefit from it. When the server answers 415 Unsupported Media Type
+     * to a compressed body, compression is turned off for the rest of the session. Only idempotent requests are
+     * sent again uncompressed, other requests fail with that response so they are never posted twice.
+     */
+    private static class GzipRequestInterceptor implements Interceptor {
+        private static final long MIN_GZIP_SIZE = 1024;
+        private volatile boolean enabled = true;
+
+        @Override
+        public Response intercept(Chain chain) throws IOException {
+            Request request = chain.request();
+            RequestBody body = request.body();
+            if (!enabled || body == null || body instanceof MultipartBody
+                    || request.header("Content-Encoding") != null || body.contentLength() < MIN_GZIP_SIZE) {
+                return chain.proceed(request);
+            }
+
+            Request compressedRequest = request.newBuilder()
+                    .header("Content-Encoding", "gzip")
+                    .method(request.method(), gzip(body))
+                    .build();
+            Response response = chain.proceed(compressedRequest);
+            if (response.code() != 415) {
+                return response;
+            }
+
+            //The body was rejected before it was processed, so sending it again uncompressed is safe for any method
+            Log.i(TAG, "Server does not accept gzip request body, disable request compression");
+            enabled = false;
+            Util.closeQuietly(response.body());
+            return chain.proceed(request);
+        }
+
+        private static RequestBody gzip(RequestBody body) throws IOException {
+            Buffer buffer = new Buffer();
+            BufferedSink gzipSink = Okio.buffer(new GzipSink(buffer));
+            body.writeTo(gzipSink);
+            gzipSink.close();
+            return RequestBody.create(body.contentType(), buffer.readByteString());
+        }
+    }
+
     public interface ProgressListener {
         void onProgress(long total);
     }
@@ -78,20 +78,21 @@ final class QiscusApiParser {
             qiscusChatRoom.setOptions(jsonChatRoom.get("options").isJsonNull() ? null : jsonChatRoom.get("options").getAsString());
             qiscusChatRoom.setAvatarUrl(jsonChatRoom.get("avatar_url").getAsString());
 
-            JsonArray jsonMembers = jsonElement.getAsJsonObject().get("results")
-                    .getAsJsonObject().get("room").getAsJsonObject().get("participants").getAsJsonArray();
-            List<QiscusRoomMember> members = new ArrayList<>();
-            for (JsonElement jsonMember : jsonMembers) {
-                QiscusRoomMember member = new QiscusRoomMember();
-                member.setEmail(jsonMember.getAsJsonObject().get("email").getAsString());
-                member.setAvatar(jsonMember.getAsJsonObject().get("avatar_url").getAsString());
-                member.setUsername(jsonMember.getAsJsonObject().get("username").getAsString());
-                members.add(member);
+            //Participants are left out when the client asked the server to exclude them
+            if (jsonChatRoom.has("participants")) {
+                JsonArray jsonMembers = jsonChatRoom.get("participants").getAsJsonArray();
+                List<QiscusRoomMember> members = new ArrayList<>();
+                for (JsonElement jsonMember : jsonMembers) {
+                    QiscusRoomMember member = new QiscusRoomMember();
+                    member.setEmail(jsonMember.getAsJsonObject().get("email").getAsString());
+                    member.setAvatar(jsonMember.getAsJsonObject().get("avatar_url").getAsString());
+                    member.setUsername(jsonMember.getAsJsonObject().get("username").getAsString());
+                    members.add(member);
+                }
+                qiscusChatRoom.setMember(members);
             }
-            qiscusChatRoom.setMember(members);
 
-            JsonArray comments = jsonElement.getAsJsonObject().get("results")
-                    .getAsJsonObject().get("comments").getAsJsonArray();
+            JsonArray comments = getComments(jsonElement);
 
             if (comments.size() > 0) {
                 JsonObject lastComment = comments.get(0).getAsJsonObject();
@@ -113,7 +114,7 @@ final class QiscusApiParser {
         if (jsonElement != null) {
             QiscusChatRoom qiscusChatRoom = parseQiscusChatRoom(jsonElement);
 
-            JsonArray comments = jsonElement.getAsJsonObject().get("results").getAsJsonObject().get("comments").getAsJsonArray();
+            JsonArray comments = getComments(jsonElement);
             List<QiscusComment> qiscusComments = new ArrayList<>();
             for (JsonElement jsonComment : comments) {
                 qiscusComments.add(parseQiscusComment(jsonComment, qiscusChatRoom.getId(), qiscusChatRoom.getLastTopicId()));
@@ -125,6 +126,11 @@ final class QiscusApiParser {
         return null;
     }
 
+    private static JsonArray getComments(JsonElement jsonElement) {
+        JsonObject results = jsonElement.getAsJsonObject().get("results").getAsJsonObject();
+        return results.has("comments") ? results.get("comments").getAsJsonArray() : new JsonArray();
+    }
+
     static QiscusComment parseQiscusComment(JsonElement jsonElement, int roomId, int topicId) {
         QiscusComment qiscusComment = new QiscusComment();
         JsonObject jsonComment = jsonElement.getAsJsonObject();
@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.util.Base64;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.qiscus.sdk.data.model.QiscusComment;
+
+import java.nio.charset.Charset;
+import java.util.Date;
+
+/**
+ * Decode realtime comment payloads, both the JSON format and the compact binary format.
+ * <p>
+ * A compact payload starts with {@link #COMPACT_MARKER}, which can never start a JSON document, followed by
+ * protobuf style fields. Each field is a varint key of (field number &lt;&lt; 3 | wire type), wire type 0 is
+ * a varint value and wire type 2 is a varint length followed by that many UTF-8 bytes. Unknown fields are
+ * skipped, so new fields can be added without breaking older clients. Strings are decoded straight from the
+ * message bytes without copying them first.
+ * <p>
+ * Fields: 1 id, 2 topic id, 3 room id, 4 unique id, 5 comment before id, 6 message, 7 sender name,
+ * 8 sender email, 9 sender avatar, 10 time in millis, 11 room name, 12 room avatar, 13 group (1) or single (0),
+ * 14 type, 15 extra payload as JSON.
+ */
+public final class QiscusCommentCodec {
+    public static final byte COMPACT_MARKER = 0x01;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+
+    private QiscusCommentCodec() {
+
+    }
+
+    public static boolean isCompact(byte[] payload) {
+        return payload != null && payload.length > 0 && payload[0] == COMPACT_MARKER;
+    }
+
+    /**
+     * @param payload Payload of a comment message, compact or JSON
+     * @return The comment
+     */
+    public static QiscusComment decode(byte[] payload) {
+        if (isCompact(payload)) {
+            return new Reader(payload).readComment();
+        }
+        return QiscusPusherApi.jsonToComment(new String(payload, UTF_8));
+    }
+
+    /**
+     * @param base64Payload Compact payload encoded with base64, as it is sent through FCM
+     * @return The comment
+     */
+    public static QiscusComment decodeBase64(String base64Payload) {
+        return decode(Base64.decode(base64Payload, Base64.NO_WRAP));
+    }
+
+    private static final class Reader {
+        private final byte[] bytes;
+        private int position;
+
+        private Reader(byte[] bytes) {
+            this.bytes = bytes;
+            position = 1;
+        }
+
+        private QiscusComment readComment() {
+            QiscusComment qiscusComment = new QiscusComment();
+            boolean hasRoomName = false;
+            while (position < bytes.length) {
+                int key = (int) readVarint();
+                int field = key >>> 3;
+                int wireType = key & 0x7;
+                if (wireType == WIRE_VARINT) {
+                    long value = readVarint();
+                    switch (field) {
+                        case 1:
+                            qiscusComment.setId((int) value);
+                            break;
+                        case 2:
+                            qiscusComment.setTopicId((int) value);
+                            break;
+                        case 3:
+                            qiscusComment.setRoomId((int) value);
+                            break;
+                        case 5:
+                            qiscusComment.setCommentBeforeId((int) value);
+                            break;
+                        case 10:
+                            qiscusComment.setTime(new Date(value));
+                            break;
+                        case 13:
+                            qiscusComment.setGroupMessage(value == 1);
+                            break;
+                        default:
+                            break;
+                    }
+                } else if (wireType == WIRE_LENGTH_DELIMITED) {
+                    int length = (int) readVarint();
+                    if (length < 0 || position + length > bytes.length) {
+                        throw new IllegalArgumentException("Invalid length of field " + field);
+                    }
+                    String value = new String(bytes, position, length, UTF_8);
+                    position += length;
+                    switch (field) {
+                        case 4:
+                            qiscusComment.setUniqueId(value);
+                            break;
+                        case 6:
+                            qiscusComment.setMessage(value);
+                            break;
+                        case 7:
+                            qiscusComment.setSender(value);
+                            break;
+                        case 8:
+                            qiscusComment.setSenderEmail(value);
+                            break;
+                        case 9:
+                            qiscusComment.setSenderAvatar(value);
+                            break;
+                        case 11:
+                            qiscusComment.setRoomName(value);
+                            hasRoomName = true;
+                            break;
+                        case 12:
+                            qiscusComment.setRoomAvatar(value);
+                            break;
+                        case 14:
+                            qiscusComment.setRawType(value);
+                            break;
+                        case 15:
+                            qiscusComment.setExtraPayload(value);
+                            break;
+                        default:
+                            break;
+                    }
+                } else {
+                    throw new IllegalArgumentException("Unsupported wire type " + wireType);
+                }
+            }
+
+            qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+            if (!hasRoomName) {
+                qiscusComment.setRoomName(qiscusComment.getSender());
+            }
+            if (qiscusComment.getExtraPayload() != null && qiscusComment.getType() == QiscusComment.Type.BUTTONS) {
+                useButtonsText(qiscusComment);
+            }
+            return qiscusComment;
+        }
+
+        private long readVarint() {
+            long result = 0;
+            int shift = 0;
+            while (shift < 64) {
+                if (position >= bytes.length) {
+                    throw new IllegalArgumentException("Truncated varint");
+                }
+                byte b = bytes[position++];
+                result |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return result;
+                }
+                shift += 7;
+            }
+            throw new IllegalArgumentException("Malformed varint");
+        }
+
+        private static void useButtonsText(QiscusComment qiscusComment) {
+            JsonObject payload = new JsonParser().parse(qiscusComment.getExtraPayload()).getAsJsonObject();
+            if (payload.has("text")) {
+                String text = payload.get("text").getAsString();
+                if (text != null && !text.trim().isEmpty()) {
+                    qiscusComment.setMessage(text.trim());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.os.SystemClock;
+
+import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Measure the round trip time of acknowledged publishes and decide whether the connection is still healthy.
+ * A connection is unhealthy when a publish has waited for its acknowledgement much longer than the usual
+ * round trip time, no matter how many publishes are waiting. Acknowledged publishes are rare, so a probe is
+ * asked for once nothing has been received nor acknowledged for a while.
+ */
+final class QiscusConnectionHealth {
+    private static final long INITIAL_RTT = 1000;
+    private static final long MIN_ACK_TIMEOUT = 10000;
+    private static final long MAX_ACK_TIMEOUT = 60000;
+    private static final int ACK_TIMEOUT_FACTOR = 4;
+    private static final long PROBE_IDLE_PERIOD = 30000;
+
+    private final Map<IMqttDeliveryToken, Long> pendingTokens;
+    private long smoothedRtt = INITIAL_RTT;
+    private long lastRtt = -1;
+    private long lastActivityTime = SystemClock.elapsedRealtime();
+
+    QiscusConnectionHealth() {
+        pendingTokens = new HashMap<>();
+    }
+
+    synchronized void onPublished(IMqttDeliveryToken token) {
+        if (token != null) {
+            pendingTokens.put(token, SystemClock.elapsedRealtime());
+        }
+    }
+
+    synchronized void onDelivered(IMqttDeliveryToken token) {
+        Long publishTime = pendingTokens.remove(token);
+        if (publishTime != null) {
+            lastActivityTime = SystemClock.elapsedRealtime();
+            lastRtt = lastActivityTime - publishTime;
+            //Same smoothing as TCP, one eighth of the new sample
+            smoothedRtt = (smoothedRtt * 7 + lastRtt) / 8;
+        }
+    }
+
+    /**
+     * Anything received from the broker tells the connection is alive
+     */
+    synchronized void onReceived() {
+        lastActivityTime = SystemClock.elapsedRealtime();
+    }
+
+    synchronized void reset() {
+        pendingTokens.clear();
+        lastActivityTime = SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * @return true if the connection has been quiet for too long and no publish is waiting to be acknowledged
+     */
+    synchronized boolean needsProbe() {
+        return pendingTokens.isEmpty() && SystemClock.elapsedRealtime() - lastActivityTime > PROBE_IDLE_PERIOD;
+    }
+
+    synchronized int getPendingCount() {
+        return pendingTokens.size();
+    }
+
+    synchronized long getSmoothedRtt() {
+        return smoothedRtt;
+    }
+
+    synchronized long getLastRtt() {
+        return lastRtt;
+    }
+
+    synchronized boolean isHealthy() {
+        if (pendingTokens.isEmpty()) {
+            return true;
+        }
+        long ackTimeout = Math.max(MIN_ACK_TIMEOUT, Math.min(MAX_ACK_TIMEOUT, smoothedRtt * ACK_TIMEOUT_FACTOR));
+        long now = SystemClock.elapsedRealtime();
+        for (Long publishTime : pendingTokens.values()) {
+            if (now - publishTime > ackTimeout) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.net.NetworkInfo;
+import android.support.v4.net.ConnectivityManagerCompat;
+import android.telephony.TelephonyManager;
+import android.util.Log;
+
+import com.qiscus.sdk.event.QiscusNetworkEvent;
+
+import org.greenrobot.eventbus.EventBus;
+
+/**
+ * Keep track of the current network and classify it, so the SDK can spend less data on metered or slow links.
+ * A {@link QiscusNetworkEvent} is posted every time the network type changes.
+ */
+public enum QiscusConnectivityMonitor {
+    INSTANCE;
+    private static final String TAG = QiscusConnectivityMonitor.class.getSimpleName();
+
+    private ConnectivityManager connectivityManager;
+    private volatile NetworkType networkType = NetworkType.UNMETERED;
+    private boolean started;
+
+    QiscusConnectivityMonitor() {
+
+    }
+
+    public static QiscusConnectivityMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Start listening to connectivity changes, called once by Qiscus.init()
+     *
+     * @param context Application context
+     */
+    public synchronized void start(Context context) {
+        if (started) {
+            return;
+        }
+        started = true;
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        networkType = readNetworkType();
+        context.registerReceiver(new BroadcastReceiver() {
+            @Override
+            public void onReceive(Context context, Intent intent) {
+                NetworkType previousType = networkType;
+                networkType = readNetworkType();
+                if (previousType != networkType) {
+                    Log.i(TAG, "Network changed from " + previousType + " to " + networkType);
+                    EventBus.getDefault().post(new QiscusNetworkEvent(previousType, networkType));
+                }
+            }
+        }, new IntentFilter(ConnectivityManager.CONNECTIVITY_ACTION));
+    }
+
+    public NetworkType getNetworkType() {
+        return networkType;
+    }
+
+    public boolean isConnected() {
+        return networkType != NetworkType.NONE;
+    }
+
+    public boolean isMetered() {
+        return networkType == NetworkType.METERED || networkType == NetworkType.SLOW;
+    }
+
+    public boolean isSlow() {
+        return networkType == NetworkType.SLOW;
+    }
+
+    private NetworkType readNetworkType() {
+        if (connectivityManager == null) {
+            return NetworkType.UNMETERED;
+        }
+
+        NetworkInfo networkInfo;
+        try {
+            networkInfo = connectivityManager.getActiveNetworkInfo();
+        } catch (SecurityException e) {
+            e.printStackTrace();
+            return NetworkType.UNMETERED;
+        }
+
+        if (networkInfo == null || !networkInfo.isConnected()) {
+            return NetworkType.NONE;
+        }
+        if (networkInfo.getType() == ConnectivityManager.TYPE_MOBILE && isSlowMobileNetwork(networkInfo.getSubtype())) {
+            return NetworkType.SLOW;
+        }
+        return ConnectivityManagerCompat.isActiveNetworkMetered(connectivityManager)
+                ? NetworkType.METERED : NetworkType.UNMETERED;
+    }
+
+    private static boolean isSlowMobileNetwork(int subtype) {
+        switch (subtype) {
+            case TelephonyManager.NETWORK_TYPE_GPRS:
+            case TelephonyManager.NETWORK_TYPE_EDGE:
+            case TelephonyManager.NETWORK_TYPE_CDMA:
+            case TelephonyManager.NETWORK_TYPE_1xRTT:
+            case TelephonyManager.NETWORK_TYPE_IDEN:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    public enum NetworkType {
+        /**
+         * No connection at all
+         */
+        NONE,
+        /**
+         * 2G mobile network, always metered
+         */
+        SLOW,
+        /**
+         * Metered network such as 3G or LTE, or a tethered hotspot
+         */
+        METERED,
+        /**
+         * Unmetered network such as Wi-Fi or ethernet
+         */
+        UNMETERED
+    }
+}
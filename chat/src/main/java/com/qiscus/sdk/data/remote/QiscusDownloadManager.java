@@ -0,0 +1,380 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.support.v4.util.Pair;
+import android.util.Log;
+
+import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.event.QiscusNetworkEvent;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.internal.Util;
+import okio.BufferedSource;
+import rx.Emitter;
+import rx.Observable;
+import rx.exceptions.OnErrorThrowable;
+
+/**
+ * Download queue for comment attachments. Only a few downloads run at the same time, higher priority first,
+ * and asking for an url that is already queued joins the existing download instead of starting a new one.
+ * Data is written to a temporary file which is renamed to the target only when complete, so an interrupted
+ * download never leaves a corrupt file behind and is resumed with an HTTP Range request next time.
+ * Low priority downloads may be held back until an unmetered network is available,
+ * see {@link com.qiscus.sdk.data.model.QiscusNetworkPolicyConfig}.
+ */
+public enum QiscusDownloadManager {
+    INSTANCE;
+    public static final int PRIORITY_LOW = 0;
+    public static final int PRIORITY_NORMAL = 1;
+    public static final int PRIORITY_HIGH = 2;
+
+    private static final String TAG = QiscusDownloadManager.class.getSimpleName();
+    private static final int MAX_PARALLEL_DOWNLOADS = 3;
+    private static final int BUFFER_SIZE = 8192;
+    private static final String TEMP_FILE_SUFFIX = ".download";
+
+    private final OkHttpClient httpClient;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, DownloadTask> tasks;
+    private final List<DownloadTask> deferredTasks;
+    private final AtomicLong sequence;
+
+    QiscusDownloadManager() {
+        httpClient = QiscusApi.getInstance().getHttpClient();
+        tasks = new HashMap<>();
+        deferredTasks = new ArrayList<>();
+        sequence = new AtomicLong();
+
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(MAX_PARALLEL_DOWNLOADS, MAX_PARALLEL_DOWNLOADS, 30, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(11, (lhs, rhs) -> ((DownloadTask) lhs).compareTo((DownloadTask) rhs)),
+                runnable -> new Thread(runnable, "qiscus_download_" + threadCount.incrementAndGet()));
+        executor.allowCoreThreadTimeOut(true);
+        EventBus.getDefault().register(this);
+    }
+
+    public static QiscusDownloadManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Download the url into the output file. The download is cancelled once every subscriber has unsubscribed,
+     * a cancelled download completes without emitting any file.
+     *
+     * @param url              The file url
+     * @param output           Where to save the file
+     * @param priority         One of {@link #PRIORITY_LOW}, {@link #PRIORITY_NORMAL} or {@link #PRIORITY_HIGH}
+     * @param progressListener Receive the download progress in percent, may be null
+     * @return Observable of downloaded file
+     */
+    public Observable<File> download(String url, File output, int priority, QiscusApi.ProgressListener progressListener) {
+        return Observable.create(emitter -> {
+            DownloadTask task;
+            synchronized (tasks) {
+                task = tasks.get(url);
+                if (task == null) {
+                    task = new DownloadTask(url, output, priority, sequence.getAndIncrement());
+                    task.addListener(emitter, progressListener);
+                    tasks.put(url, task);
+                    executor.execute(task);
+                } else {
+                    task.addListener(emitter, progressListener);
+                    if (priority > task.priority) {
+                        //A running task keeps running, its priority still tells it is not a prefetch anymore
+                        boolean queued = executor.remove(task) || deferredTasks.remove(task);
+                        task.priority = priority;
+                        if (queued) {
+                            executor.execute(task);
+                        }
+                    }
+                }
+            }
+            DownloadTask finalTask = task;
+            emitter.setCancellation(() -> finalTask.removeListener(emitter));
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    public boolean isDownloading(String url) {
+        synchronized (tasks) {
+            return tasks.containsKey(url);
+        }
+    }
+
+    /**
+     * Cancel the download of the url if any, the downloaded part is kept so the next download can resume it.
+     *
+     * @param url The file url
+     */
+    public void cancel(String url) {
+        DownloadTask task;
+        synchronized (tasks) {
+            task = tasks.remove(url);
+        }
+        if (task != null) {
+            task.cancel();
+            task.finish(null, null);
+        }
+    }
+
+    /**
+     * Cancel the download of the url only if nobody asked for it with more than {@link #PRIORITY_LOW}, so
+     * prefetching can be stopped without stopping a download the user is waiting for.
+     *
+     * @param url The file url
+     */
+    public void cancelIfLowPriority(String url) {
+        DownloadTask task;
+        synchronized (tasks) {
+            task = tasks.get(url);
+            if (task == null || task.priority != PRIORITY_LOW) {
+                return;
+            }
+            tasks.remove(url);
+        }
+        task.cancel();
+        task.finish(null, null);
+    }
+
+    @Subscribe
+    public void onNetworkChanged(QiscusNetworkEvent event) {
+        if (!event.isConnected() || QiscusConnectivityMonitor.getInstance().isMetered()) {
+            return;
+        }
+        synchronized (tasks) {
+            for (DownloadTask task : deferredTasks) {
+                executor.execute(task);
+            }
+            deferredTasks.clear();
+        }
+    }
+
+    /**
+     * Low priority downloads wait for an unmetered network when the network policy asks for it
+     */
+    private boolean shouldDefer(DownloadTask task) {
+        return task.priority == PRIORITY_LOW && QiscusConnectivityMonitor.getInstance().isMetered()
+                && Qiscus.getChatConfig().getQiscusNetworkPolicyConfig().isDeferBackgroundDownloadOnMetered();
+    }
+
+    private class DownloadTask implements Runnable, Comparable<DownloadTask> {
+        private final String url;
+        private final File output;
+        private final long order;
+        private final List<Pair<Emitter<File>, QiscusApi.ProgressListener>> listeners;
+        private volatile int priority;
+        private volatile boolean cancelled;
+        private volatile Call call;
+
+        private DownloadTask(String url, File output, int priority, long order) {
+            this.url = url;
+            this.output = output;
+            this.priority = priority;
+            this.order = order;
+            listeners = new ArrayList<>();
+        }
+
+        private synchronized void addListener(Emitter<File> emitter, QiscusApi.ProgressListener progressListener) {
+            listeners.add(Pair.create(emitter, progressListener));
+        }
+
+        private void removeListener(Emitter<File> emitter) {
+            boolean noListener;
+            synchronized (this) {
+                for (int i = listeners.size() - 1; i >= 0; i--) {
+                    if (listeners.get(i).first == emitter) {
+                        listeners.remove(i);
+                    }
+                }
+                noListener = listeners.isEmpty();
+            }
+            if (noListener) {
+                synchronized (tasks) {
+                    if (tasks.get(url) == this) {
+                        tasks.remove(url);
+                    }
+                }
+                cancel();
+            }
+        }
+
+        private void cancel() {
+            cancelled = true;
+            executor.remove(this);
+            synchronized (tasks) {
+                deferredTasks.remove(this);
+            }
+            Call currentCall = call;
+            if (currentCall != null) {
+                currentCall.cancel();
+            }
+        }
+
+        @Override
+        public void run() {
+            if (cancelled) {
+                return;
+            }
+
+            synchronized (tasks) {
+                if (shouldDefer(this)) {
+                    deferredTasks.add(this);
+                    return;
+                }
+            }
+
+            File tempFile = new File(output.getPath() + TEMP_FILE_SUFFIX);
+            try {
+                fetch(tempFile, true);
+                if (cancelled) {
+                    finish(null, null);
+                    return;
+                }
+                if (!tempFile.renameTo(output)) {
+                    throw new IOException("Can not move downloaded file to " + output.getPath());
+                }
+                finish(output, null);
+            } catch (Exception e) {
+                if (cancelled) {
+                    finish(null, null);
+                } else {
+                    Log.e(TAG, "Failed to download " + url);
+                    finish(null, OnErrorThrowable.addValueAsLastCause(e, url));
+                }
+            }
+        }
+
+        private void fetch(File tempFile, boolean allowResume) throws IOException {
+            long downloaded = allowResume && tempFile.exists() ? tempFile.length() : 0;
+            Request.Builder requestBuilder = new Request.Builder().url(url);
+            if (downloaded > 0) {
+                requestBuilder.header("Range", "bytes=" + downloaded + "-");
+            }
+
+            call = httpClient.newCall(requestBuilder.build());
+            Response response = call.execute();
+            ResponseBody responseBody = response.body();
+
+            if (response.code() == 416 && downloaded > 0) {
+                //The partial file does not match with the remote file anymore, start from the beginning
+                Util.closeQuietly(responseBody);
+                fetch(tempFile, false);
+                return;
+            }
+
+            OutputStream outputStream = null;
+            try {
+                if (!response.isSuccessful()) {
+                    throw new IOException("Unexpected response code " + response.code());
+                }
+
+                boolean append = downloaded > 0 && response.code() == 206;
+                if (!append) {
+                    downloaded = 0;
+                }
+                long contentLength = responseBody.contentLength();
+                long fileLength = contentLength > 0 ? downloaded + contentLength : -1;
+
+                outputStream = new FileOutputStream(tempFile, append);
+                BufferedSource source = responseBody.source();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int lastProgress = -1;
+                int count;
+                while (!cancelled && (count = source.read(buffer)) != -1) {
+                    outputStream.write(buffer, 0, count);
+                    downloaded += count;
+                    if (fileLength > 0) {
+                        int progress = (int) (downloaded * 100 / fileLength);
+                        if (progress != lastProgress) {
+                            lastProgress = progress;
+                            publishProgress(progress);
+                        }
+                    }
+                }
+                outputStream.flush();
+            } finally {
+                Util.closeQuietly(outputStream);
+                Util.closeQuietly(responseBody);
+            }
+        }
+
+        private void publishProgress(int progress) {
+            List<Pair<Emitter<File>, QiscusApi.ProgressListener>> currentListeners;
+            synchronized (this) {
+                currentListeners = new ArrayList<>(listeners);
+            }
+            for (Pair<Emitter<File>, QiscusApi.ProgressListener> listener : currentListeners) {
+                if (listener.second != null) {
+                    listener.second.onProgress(progress);
+                }
+            }
+        }
+
+        private void finish(File file, Throwable throwable) {
+            synchronized (tasks) {
+                if (tasks.get(url) == this) {
+                    tasks.remove(url);
+                }
+            }
+
+            List<Pair<Emitter<File>, QiscusApi.ProgressListener>> currentListeners;
+            synchronized (this) {
+                currentListeners = new ArrayList<>(listeners);
+                listeners.clear();
+            }
+            for (Pair<Emitter<File>, QiscusApi.ProgressListener> listener : currentListeners) {
+                if (throwable != null) {
+                    listener.first.onError(throwable);
+                } else {
+                    if (file != null) {
+                        listener.first.onNext(file);
+                    }
+                    listener.first.onCompleted();
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(DownloadTask other) {
+            if (priority != other.priority) {
+                return priority > other.priority ? -1 : 1;
+            }
+            return order < other.order ? -1 : (order == other.order ? 0 : 1);
+        }
+    }
+}
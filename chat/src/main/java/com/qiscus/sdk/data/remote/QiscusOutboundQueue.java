@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.support.v4.util.Pair;
+import android.util.Base64;
+
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import com.qiscus.sdk.util.QiscusSchedulers;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+
+/**
+ * Messages published while the MQTT client is not connected. The queue belongs to {@link QiscusPusherApi} and
+ * not to the MQTT client, so it survives every restart of the client, and it is saved to the shared preferences
+ * so it also survives the process. Saving happens off the main thread, once for all the changes made meanwhile.
+ * Only the latest retained message of a topic is kept, because the broker would only keep that one anyway.
+ * When the queue is full the oldest message is dropped.
+ */
+final class QiscusOutboundQueue {
+    private static final int CAPACITY = 100;
+    private static final String KEY_MESSAGES = "outbound_messages";
+
+    private final SharedPreferences sharedPreferences;
+    private final Gson gson;
+    private final LinkedList<Message> messages;
+    private boolean saveScheduled;
+
+    private long queuedCount;
+    private long flushedCount;
+    private long droppedOldestCount;
+    private long coalescedCount;
+    private long totalTimeInQueue;
+    private long maxTimeInQueue;
+
+    QiscusOutboundQueue(Context context) {
+        sharedPreferences = context.getSharedPreferences("qiscus.outbound", Context.MODE_PRIVATE);
+        gson = new Gson();
+        messages = new LinkedList<>();
+        restore();
+    }
+
+    synchronized void enqueue(String topic, MqttMessage mqttMessage) {
+        if (mqttMessage.isRetained()) {
+            Iterator<Message> iterator = messages.iterator();
+            while (iterator.hasNext()) {
+                Message message = iterator.next();
+                if (message.retained && message.topic.equals(topic)) {
+                    iterator.remove();
+                    coalescedCount++;
+                }
+            }
+        }
+        messages.add(new Message(topic, mqttMessage));
+        queuedCount++;
+        if (messages.size() > CAPACITY) {
+            messages.removeFirst();
+            droppedOldestCount++;
+        }
+        save();
+    }
+
+    /**
+     * @return Topic and message at the head of the queue, or null if it is empty
+     */
+    synchronized Pair<String, MqttMessage> peek() {
+        if (messages.isEmpty()) {
+            return null;
+        }
+        Message message = messages.getFirst();
+        return Pair.create(message.topic, message.toMqttMessage());
+    }
+
+    /**
+     * Remove the head of the queue once it has been handed to the MQTT client
+     */
+    synchronized void onFlushed() {
+        if (messages.isEmpty()) {
+            return;
+        }
+        long timeInQueue = Math.max(0, System.currentTimeMillis() - messages.removeFirst().queuedTime);
+        flushedCount++;
+        totalTimeInQueue += timeInQueue;
+        maxTimeInQueue = Math.max(maxTimeInQueue, timeInQueue);
+        save();
+    }
+
+    synchronized void clear() {
+        messages.clear();
+        save();
+    }
+
+    synchronized QiscusOutboundQueueStats getStats() {
+        return new QiscusOutboundQueueStats(messages.size(), queuedCount, flushedCount, droppedOldestCount,
+                coalescedCount, flushedCount == 0 ? 0 : totalTimeInQueue / flushedCount, maxTimeInQueue);
+    }
+
+    private void save() {
+        if (saveScheduled) {
+            return;
+        }
+        saveScheduled = true;
+        QiscusSchedulers.runOnDb(() -> {
+            synchronized (this) {
+                saveScheduled = false;
+                sharedPreferences.edit()
+                        .putString(KEY_MESSAGES, gson.toJson(messages))
+                        .apply();
+            }
+        });
+    }
+
+    private void restore() {
+        String json = sharedPreferences.getString(KEY_MESSAGES, "");
+        if (json.isEmpty()) {
+            return;
+        }
+        try {
+            List<Message> savedMessages = gson.fromJson(json, new TypeToken<ArrayList<Message>>() {}.getType());
+            if (savedMessages != null) {
+                messages.addAll(savedMessages);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static class Message {
+        private String topic;
+        private String payload;
+        private int qos;
+        private boolean retained;
+        private long queuedTime;
+
+        private Message(String topic, MqttMessage mqttMessage) {
+            this.topic = topic;
+            payload = Base64.encodeToString(mqttMessage.getPayload(), Base64.NO_WRAP);
+            qos = mqttMessage.getQos();
+            retained = mqttMessage.isRetained();
+            queuedTime = System.currentTimeMillis();
+        }
+
+        private MqttMessage toMqttMessage() {
+            MqttMessage mqttMessage = new MqttMessage(Base64.decode(payload, Base64.NO_WRAP));
+            mqttMessage.setQos(qos);
+            mqttMessage.setRetained(retained);
+            return mqttMessage;
+        }
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+/**
+ * Snapshot of the counters of realtime messages published while offline, see
+ * {@link QiscusPusherApi#getOutboundQueueStats()}. Counters start from zero every time the app starts.
+ */
+public final class QiscusOutboundQueueStats {
+    private final int pendingCount;
+    private final long queuedCount;
+    private final long flushedCount;
+    private final long droppedOldestCount;
+    private final long coalescedCount;
+    private final long averageTimeInQueue;
+    private final long maxTimeInQueue;
+
+    QiscusOutboundQueueStats(int pendingCount, long queuedCount, long flushedCount, long droppedOldestCount,
+                             long coalescedCount, long averageTimeInQueue, long maxTimeInQueue) {
+        this.pendingCount = pendingCount;
+        this.queuedCount = queuedCount;
+        this.flushedCount = flushedCount;
+        this.droppedOldestCount = droppedOldestCount;
+        this.coalescedCount = coalescedCount;
+        this.averageTimeInQueue = averageTimeInQueue;
+        this.maxTimeInQueue = maxTimeInQueue;
+    }
+
+    /**
+     * @return Messages still waiting for a connection
+     */
+    public int getPendingCount() {
+        return pendingCount;
+    }
+
+    public long getQueuedCount() {
+        return queuedCount;
+    }
+
+    /**
+     * @return Messages handed to the MQTT client after a reconnect
+     */
+    public long getFlushedCount() {
+        return flushedCount;
+    }
+
+    /**
+     * @return Messages lost because the queue was full
+     */
+    public long getDroppedOldestCount() {
+        return droppedOldestCount;
+    }
+
+    /**
+     * @return Retained messages replaced by a newer one of the same topic before they were sent
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    /**
+     * @return Average time in millis a flushed message waited in the queue
+     */
+    public long getAverageTimeInQueue() {
+        return averageTimeInQueue;
+    }
+
+    public long getMaxTimeInQueue() {
+        return maxTimeInQueue;
+    }
+
+    @Override
+    public String toString() {
+        return "QiscusOutboundQueueStats{" +
+                "pendingCount=" + pendingCount +
+                ", queuedCount=" + queuedCount +
+                ", flushedCount=" + flushedCount +
+                ", droppedOldestCount=" + droppedOldestCount +
+                ", coalescedCount=" + coalescedCount +
+                ", averageTimeInQueue=" + averageTimeInQueue +
+                ", maxTimeInQueue=" + maxTimeInQueue +
+                '}';
+    }
+}
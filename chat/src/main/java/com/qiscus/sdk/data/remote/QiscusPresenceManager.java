@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.os.SystemClock;
+
+import com.qiscus.sdk.event.QiscusUserStatusEvent;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import rx.Emitter;
+import rx.Observable;
+
+/**
+ * Online status of other users. Users observed together are subscribed in a single SUBSCRIBE, and the last known
+ * status of every user is cached for a while, so a screen opened again shows the status right away instead of
+ * waiting for the retained message from the server.
+ */
+public enum QiscusPresenceManager {
+    INSTANCE;
+    private static final long CACHE_TTL = 5 * 60 * 1000;
+    private static final int MAX_CACHE_SIZE = 1000;
+
+    private final Map<String, CachedPresence> cache;
+    private final List<PresenceListener> listeners;
+
+    QiscusPresenceManager() {
+        cache = new LinkedHashMap<String, CachedPresence>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Entry<String, CachedPresence> eldest) {
+                return size() > MAX_CACHE_SIZE;
+            }
+        };
+        listeners = new CopyOnWriteArrayList<>();
+        EventBus.getDefault().register(this);
+    }
+
+    public static QiscusPresenceManager getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Observe the online status of users. The cached status of each user is emitted right away if it is still
+     * fresh, then every status change. Users are unlistened once the subscription is unsubscribed.
+     *
+     * @param users Email of the users
+     * @return Observable of the status changes
+     */
+    public Observable<QiscusUserStatusEvent> observePresence(Collection<String> users) {
+        Set<String> userSet = new HashSet<>(users);
+        return Observable.create(emitter -> {
+            PresenceListener listener = new PresenceListener(userSet, emitter);
+            listeners.add(listener);
+            for (QiscusUserStatusEvent event : getCachedPresence(userSet)) {
+                emitter.onNext(event);
+            }
+            QiscusPusherApi.getInstance().listenUserStatus(userSet);
+
+            emitter.setCancellation(() -> {
+                listeners.remove(listener);
+                QiscusPusherApi.getInstance().unListenUserStatus(userSet);
+            });
+        }, Emitter.BackpressureMode.BUFFER);
+    }
+
+    /**
+     * @param user Email of the user
+     * @return The last known status of the user, or null if it is unknown or too old
+     */
+    public QiscusUserStatusEvent getCachedPresence(String user) {
+        synchronized (cache) {
+            CachedPresence cachedPresence = cache.get(user);
+            if (cachedPresence == null) {
+                return null;
+            }
+            if (SystemClock.elapsedRealtime() - cachedPresence.receivedTime > CACHE_TTL) {
+                cache.remove(user);
+                return null;
+            }
+            return cachedPresence.event;
+        }
+    }
+
+    private List<QiscusUserStatusEvent> getCachedPresence(Collection<String> users) {
+        List<QiscusUserStatusEvent> events = new ArrayList<>();
+        for (String user : users) {
+            QiscusUserStatusEvent event = getCachedPresence(user);
+            if (event != null) {
+                events.add(event);
+            }
+        }
+        return events;
+    }
+
+    @Subscribe
+    public void onUserStatusChanged(QiscusUserStatusEvent event) {
+        synchronized (cache) {
+            cache.put(event.getUser(), new CachedPresence(event));
+        }
+        for (PresenceListener listener : listeners) {
+            if (listener.users.contains(event.getUser())) {
+                listener.emitter.onNext(event);
+            }
+        }
+    }
+
+    private static class CachedPresence {
+        private final QiscusUserStatusEvent event;
+        private final long receivedTime;
+
+        private CachedPresence(QiscusUserStatusEvent event) {
+            this.event = event;
+            receivedTime = SystemClock.elapsedRealtime();
+        }
+    }
+
+    private static class PresenceListener {
+        private final Set<String> users;
+        private final Emitter<QiscusUserStatusEvent> emitter;
+
+        private PresenceListener(Set<String> users, Emitter<QiscusUserStatusEvent> emitter) {
+            this.users = users;
+            this.emitter = emitter;
+        }
+    }
+}
@@ -18,7 +18,9 @@ package com.qiscus.sdk.data.remote;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.provider.Settings;
+import android.support.v4.util.Pair;
 import android.util.Log;
 
 import com.google.gson.Gson;
@@ -28,13 +30,12 @@ import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.data.model.QiscusAccount;
 import com.qiscus.sdk.data.model.QiscusChatRoom;
 import com.qiscus.sdk.data.model.QiscusComment;
-import com.qiscus.sdk.event.QiscusChatRoomEvent;
-import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
+import com.qiscus.sdk.data.model.QiscusRealtimeQosConfig;
+import com.qiscus.sdk.event.QiscusNetworkEvent;
 import com.qiscus.sdk.event.QiscusUserEvent;
-import com.qiscus.sdk.event.QiscusUserStatusEvent;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
 import org.eclipse.paho.android.service.MqttAndroidClient;
-import org.eclipse.paho.client.mqttv3.DisconnectedBufferOptions;
 import org.eclipse.paho.client.mqttv3.IMqttActionListener;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
 import org.eclipse.paho.client.mqttv3.IMqttToken;
@@ -49,6 +50,8 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 import java.util.TimeZone;
@@ -56,19 +59,17 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     INSTANCE;
     private static final String TAG = QiscusPusherApi.class.getSimpleName();
-    private static final long RETRY_PERIOD = 2000;
-    private static final long FALLBACK_PERIOD = 5000;
-    private static final int MAX_PENDING_MESSAGES = 10;
+    private static final long HEALTH_CHECK_PERIOD = 5000;
+    private static final long USER_STATUS_CHECK_PERIOD = 5000;
+    private static final long USER_STATUS_KEEP_ALIVE_PERIOD = 60000;
 
     private static DateFormat dateFormat;
     private static Gson gson;
-    private static long reconnectCounter;
 
     static {
         dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'", Locale.US);
@@ -81,16 +82,19 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
     private MqttAndroidClient mqttAndroidClient;
     private QiscusAccount qiscusAccount;
     private final Handler handler;
+    private final QiscusPusherDispatcher dispatcher;
+    private final QiscusSubscriptionManager subscriptionManager;
+    private final QiscusTypingPublisher typingPublisher;
+    private final QiscusOutboundQueue outboundQueue;
     private Runnable fallbackConnect = this::connect;
-    private Runnable fallBackListenComment = this::listenComment;
-    private Runnable fallBackListenRoom;
-    private Runnable fallBackListenUserStatus;
     private boolean connecting;
 
     private Timer timer;
-    private List<IMqttDeliveryToken> pendingTokens;
+    private final QiscusReconnectBackoff reconnectBackoff;
+    private final QiscusConnectionHealth connectionHealth;
 
-    private int setOfflineCounter;
+    private volatile Boolean lastPublishedStatus;
+    private volatile long lastStatusPublishTime;
 
     QiscusPusherApi() {
         Log.i("QiscusPusherApi", "Creating...");
@@ -100,8 +104,12 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
         clientId = Qiscus.getApps().getPackageName() + "-";
         clientId += Settings.Secure.getString(Qiscus.getApps().getContentResolver(), Settings.Secure.ANDROID_ID);
-        serverUri = "ssl://mqtt.qiscus.com:1885";
-
+        dispatcher = new QiscusPusherDispatcher();
+        subscriptionManager = new QiscusSubscriptionManager();
+        typingPublisher = new QiscusTypingPublisher(this::publishTyping);
+        outboundQueue = new QiscusOutboundQueue(Qiscus.getApps());
+        reconnectBackoff = new QiscusReconnectBackoff();
+        connectionHealth = new QiscusConnectionHealth();
         buildClient();
 
         handler = new Handler(Looper.getMainLooper());
@@ -116,7 +124,7 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     private void buildClient() {
         mqttAndroidClient = null;
-        pendingTokens = new ArrayList<>();
+        serverUri = Qiscus.getMqttBrokerUrl();
         mqttAndroidClient = new MqttAndroidClient(Qiscus.getApps().getApplicationContext(), serverUri, clientId);
         mqttAndroidClient.setCallback(this);
         mqttAndroidClient.setTraceEnabled(true);
@@ -126,71 +134,145 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
         if (Qiscus.hasSetupUser() && !connecting) {
             Log.i(TAG, "Connecting...");
             connecting = true;
+            if (!Qiscus.getMqttBrokerUrl().equals(serverUri)) {
+                //The broker has been changed with Qiscus.initWithCustomServer()
+                closeClient();
+                buildClient();
+            }
             qiscusAccount = Qiscus.getQiscusAccount();
+            dispatcher.setQiscusAccount(qiscusAccount);
             MqttConnectOptions mqttConnectOptions = new MqttConnectOptions();
             mqttConnectOptions.setAutomaticReconnect(false);
             mqttConnectOptions.setCleanSession(false);
             mqttConnectOptions.setWill("u/" + qiscusAccount.getEmail()
                     + "/s", ("0:" + Calendar.getInstance(TimeZone.getTimeZone("UTC")).getTimeInMillis())
-                    .getBytes(), 2, true);
+                    .getBytes(), getQosConfig().getPresenceQos(), true);
             try {
                 mqttAndroidClient.connect(mqttConnectOptions, null, this);
             } catch (MqttException e) {
                 e.printStackTrace();
             } catch (NullPointerException e) {
-                restartConnection();
+                //The client is broken, only then a new one is built
+                connecting = false;
+                buildClient();
+                scheduleReconnect("Client is not ready");
             }
         }
     }
 
+    private void closeClient() {
+        try {
+            mqttAndroidClient.close();
+        } catch (NullPointerException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
+    }
+
     public boolean isConnected() {
         return mqttAndroidClient != null && mqttAndroidClient.isConnected();
     }
 
-    private void startFallbackChecker(long period) {
+    /**
+     * @return Smoothed round trip time of acknowledged publishes in millis
+     */
+    public long getRoundTripTime() {
+        return connectionHealth.getSmoothedRtt();
+    }
+
+    private void startHealthChecker(long period) {
         if (timer != null) {
-            stopFallbackChecker();
+            stopHealthChecker();
         }
 
-        timer = new Timer("qiscus_mqtt_fallback", true);
+        timer = new Timer("qiscus_mqtt_health", true);
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
-                if (pendingTokens.size() >= MAX_PENDING_MESSAGES) {
-                    restartConnection();
+                if (!connectionHealth.isHealthy()) {
+                    Log.e(TAG, "Publish not acknowledged in time, rtt " + connectionHealth.getSmoothedRtt() + " ms");
+                    connectionHealth.reset();
+                    handler.post(QiscusPusherApi.this::restartConnection);
+                } else if (connectionHealth.needsProbe()) {
+                    publishProbe();
                 }
             }
-        }, 0, period);
+        }, period, period);
+    }
+
+    /**
+     * Cheap acknowledged publish, so a dead connection is noticed even when nothing else is acknowledged
+     */
+    private void publishProbe() {
+        if (!isConnected()) {
+            return;
+        }
+        try {
+            MqttMessage message = new MqttMessage();
+            message.setPayload("1".getBytes());
+            message.setQos(1);
+            track(message, mqttAndroidClient.publish("u/" + qiscusAccount.getEmail() + "/p", message));
+        } catch (MqttException | NullPointerException | IllegalArgumentException e) {
+            e.printStackTrace();
+        }
     }
 
-    private void stopFallbackChecker() {
-        timer.cancel();
+    private void stopHealthChecker() {
+        if (timer != null) {
+            timer.cancel();
+            timer = null;
+        }
     }
 
+    private void scheduleReconnect(String reason) {
+        handler.removeCallbacks(fallbackConnect);
+        if (!QiscusConnectivityMonitor.getInstance().isConnected()) {
+            Log.e(TAG, reason + ", will reconnect once network is available");
+            return;
+        }
+        long delay = reconnectBackoff.nextDelay();
+        Log.e(TAG, reason + ", will try reconnect in " + delay + " ms");
+        handler.postDelayed(fallbackConnect, delay);
+    }
+
+    /**
+     * Reconnect with the same client, the MQTT service keeps the in-flight messages of a client across reconnects
+     */
     public void restartConnection() {
         Log.i(TAG, "Restart connection...");
+        connecting = false;
+        handler.removeCallbacks(fallbackConnect);
+        if (mqttAndroidClient == null) {
+            buildClient();
+        }
+
         try {
-            connecting = false;
-            mqttAndroidClient.disconnect();
-            mqttAndroidClient.close();
+            if (mqttAndroidClient.isConnected()) {
+                mqttAndroidClient.disconnect(0, null, new IMqttActionListener() {
+                    @Override
+                    public void onSuccess(IMqttToken asyncActionToken) {
+                        handler.post(QiscusPusherApi.this::connect);
+                    }
+
+                    @Override
+                    public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                        handler.post(QiscusPusherApi.this::connect);
+                    }
+                });
+                return;
+            }
         } catch (MqttException e) {
             e.printStackTrace();
         } catch (NullPointerException | IllegalArgumentException ignore) {
             //Do nothing
         }
 
-        handler.removeCallbacks(fallbackConnect);
-        handler.removeCallbacks(fallBackListenComment);
-        handler.removeCallbacks(fallBackListenRoom);
-        handler.removeCallbacks(fallBackListenUserStatus);
-
-        buildClient();
         connect();
     }
 
     public void disconnect() {
         Log.i(TAG, "Disconnecting...");
         setUserStatus(false);
+        lastPublishedStatus = null;
         try {
             connecting = false;
             mqttAndroidClient.disconnect();
@@ -198,95 +280,247 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
         } catch (MqttException | NullPointerException | IllegalArgumentException e) {
             e.printStackTrace();
         }
-        stopFallbackChecker();
+        //A closed client can not connect again, the next user gets a new one
+        buildClient();
+        handler.removeCallbacks(fallbackConnect);
+        stopHealthChecker();
     }
 
-    private void listenComment() {
-        Log.i(TAG, "Listening comment...");
-        try {
-            mqttAndroidClient.subscribe(qiscusAccount.getToken() + "/c", 2);
-        } catch (MqttException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            Log.e(TAG, "Failure listen comment, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            handler.postDelayed(fallBackListenComment, RETRY_PERIOD);
+    /**
+     * Subscribe the comment topics and every topic which still has a listener, in a single SUBSCRIBE
+     */
+    private void resubscribeAll() {
+        List<String> topics = subscriptionManager.getTopics();
+        topics.addAll(0, getCommentTopics());
+        Log.i(TAG, "Listening " + topics.size() + " topics...");
+        subscribe(topics);
+    }
+
+    /**
+     * The server publishes compact binary comments only on the "cb" topic, so subscribing it is how the client
+     * tells the server it can decode them, see {@link QiscusCommentCodec}. The JSON "c" topic is always kept, a
+     * server which does not know "cb" keeps delivering there, and a comment received on both is only delivered once.
+     */
+    private List<String> getCommentTopics() {
+        List<String> topics = new ArrayList<>(2);
+        topics.add(qiscusAccount.getToken() + "/c");
+        if (Qiscus.getChatConfig().isEnableCompactCommentPayload()) {
+            topics.add(qiscusAccount.getToken() + "/cb");
         }
+        return topics;
     }
 
-    public void listenRoom(QiscusChatRoom qiscusChatRoom) {
-        Log.i(TAG, "Listening room...");
-        fallBackListenRoom = () -> listenRoom(qiscusChatRoom);
+    private void subscribe(List<String> topics) {
+        if (topics.isEmpty()) {
+            return;
+        }
+        if (!isConnected()) {
+            //Will be subscribed once connected
+            checkAndConnect();
+            return;
+        }
+
+        String[] topicFilters = topics.toArray(new String[topics.size()]);
+        int[] qos = new int[topicFilters.length];
+        for (int i = 0; i < topicFilters.length; i++) {
+            qos[i] = getSubscribeQos(topicFilters[i]);
+        }
         try {
-            int roomId = qiscusChatRoom.getId();
-            mqttAndroidClient.subscribe("r/" + roomId + "/+/+/t", 2);
-            mqttAndroidClient.subscribe("r/" + roomId + "/+/+/d", 2);
-            mqttAndroidClient.subscribe("r/" + roomId + "/+/+/r", 2);
-        } catch (MqttException e) {
+            mqttAndroidClient.subscribe(topicFilters, qos);
+        } catch (MqttException | NullPointerException e) {
+            Log.e(TAG, "Failure subscribe " + topics + ", will retry after reconnect");
             e.printStackTrace();
-        } catch (NullPointerException e) {
-            Log.e(TAG, "Failure listen room, try again in " + RETRY_PERIOD + " ms");
-            connect();
-            handler.postDelayed(fallBackListenRoom, RETRY_PERIOD);
+            checkAndConnect();
         }
     }
 
-    public void unListenRoom(QiscusChatRoom qiscusChatRoom) {
+    private void unsubscribe(List<String> topics) {
+        if (topics.isEmpty() || !isConnected()) {
+            return;
+        }
         try {
-            int roomId = qiscusChatRoom.getId();
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/t");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/d");
-            mqttAndroidClient.unsubscribe("r/" + roomId + "/+/+/r");
+            mqttAndroidClient.unsubscribe(topics.toArray(new String[topics.size()]));
         } catch (MqttException | NullPointerException e) {
             e.printStackTrace();
         }
-        handler.removeCallbacks(fallBackListenRoom);
-        fallBackListenRoom = null;
     }
 
-    public void listenUserStatus(String user) {
-        fallBackListenUserStatus = () -> listenUserStatus(user);
-        try {
-            mqttAndroidClient.subscribe("u/" + user + "/s", 2);
-        } catch (MqttException e) {
-            e.printStackTrace();
-        } catch (NullPointerException e) {
-            connect();
-            handler.postDelayed(fallBackListenUserStatus, RETRY_PERIOD);
+    private static QiscusRealtimeQosConfig getQosConfig() {
+        return Qiscus.getChatConfig().getQiscusRealtimeQosConfig();
+    }
+
+    /**
+     * The broker delivers with the lower of the publish and subscribe QoS, so a topic carrying several kinds of
+     * events is subscribed with the highest QoS of them and each event keeps the QoS it was published with
+     */
+    private int getSubscribeQos(String topic) {
+        QiscusRealtimeQosConfig qosConfig = getQosConfig();
+        if (topic.startsWith("r/")) {
+            return Math.max(qosConfig.getTypingQos(), qosConfig.getReceiptQos());
+        } else if (topic.startsWith("u/")) {
+            return qosConfig.getPresenceQos();
         }
+        return qosConfig.getCommentQos();
+    }
+
+    private static String getRoomTopic(int roomId) {
+        //Typing, delivered and read events of a room in one subscription
+        return "r/" + roomId + "/+/+/+";
+    }
+
+    private static List<String> getRoomTopics(Collection<QiscusChatRoom> qiscusChatRooms) {
+        List<String> topics = new ArrayList<>(qiscusChatRooms.size());
+        for (QiscusChatRoom qiscusChatRoom : qiscusChatRooms) {
+            topics.add(getRoomTopic(qiscusChatRoom.getId()));
+        }
+        return topics;
+    }
+
+    public void listenRoom(QiscusChatRoom qiscusChatRoom) {
+        listenRooms(Collections.singletonList(qiscusChatRoom));
+    }
+
+    /**
+     * Listen typing, delivered and read events of many rooms at once, e.g. every visible room of an inbox.
+     * Every call must be balanced with a call of {@link #unListenRooms(Collection)} or {@link #unListenRoom(QiscusChatRoom)}.
+     *
+     * @param qiscusChatRooms Rooms to listen
+     */
+    public void listenRooms(Collection<QiscusChatRoom> qiscusChatRooms) {
+        subscribe(subscriptionManager.acquire(getRoomTopics(qiscusChatRooms)));
+    }
+
+    public void unListenRoom(QiscusChatRoom qiscusChatRoom) {
+        unListenRooms(Collections.singletonList(qiscusChatRoom));
+    }
+
+    public void unListenRooms(Collection<QiscusChatRoom> qiscusChatRooms) {
+        unsubscribe(subscriptionManager.release(getRoomTopics(qiscusChatRooms)));
+    }
+
+    private static List<String> getUserStatusTopics(Collection<String> users) {
+        List<String> topics = new ArrayList<>(users.size());
+        for (String user : users) {
+            topics.add("u/" + user + "/s");
+        }
+        return topics;
+    }
+
+    public void listenUserStatus(String user) {
+        listenUserStatus(Collections.singletonList(user));
+    }
+
+    /**
+     * Listen online status of many users at once, e.g. every member of a room or every contact.
+     * Prefer {@link QiscusPresenceManager#observePresence(Collection)} which also gives the cached status.
+     *
+     * @param users Email of the users
+     */
+    public void listenUserStatus(Collection<String> users) {
+        subscribe(subscriptionManager.acquire(getUserStatusTopics(users)));
     }
 
     public void unListenUserStatus(String user) {
-        try {
-            mqttAndroidClient.unsubscribe("u/" + user + "/s");
-        } catch (MqttException | NullPointerException e) {
-            e.printStackTrace();
+        unListenUserStatus(Collections.singletonList(user));
+    }
+
+    public void unListenUserStatus(Collection<String> users) {
+        unsubscribe(subscriptionManager.release(getUserStatusTopics(users)));
+    }
+
+    /**
+     * Publish the status of current user when it differs from the last published one, or when the last publish
+     * is older than the keep alive period. The status is retained, so it does not need to be repeated often.
+     */
+    private void publishUserStatus(boolean online, boolean force) {
+        long now = SystemClock.elapsedRealtime();
+        boolean changed = lastPublishedStatus == null || lastPublishedStatus != online;
+        boolean expired = online && now - lastStatusPublishTime >= USER_STATUS_KEEP_ALIVE_PERIOD;
+        if (force || changed || expired) {
+            lastPublishedStatus = online;
+            lastStatusPublishTime = now;
+            setUserStatus(online);
         }
-        handler.removeCallbacks(fallBackListenUserStatus);
-        fallBackListenUserStatus = null;
     }
 
     private void setUserStatus(boolean online) {
-        checkAndConnect();
+        if (qiscusAccount == null) {
+            return;
+        }
+        MqttMessage message = new MqttMessage();
+        message.setPayload(((online ? "1:" : "0:") + System.currentTimeMillis()).getBytes());
+        message.setQos(getQosConfig().getPresenceQos());
+        message.setRetained(true);
+        publish("u/" + qiscusAccount.getEmail() + "/s", message);
+    }
+
+    /**
+     * Publish a message which must not be lost, it is queued until connected when the client is not connected
+     */
+    private void publish(String topic, MqttMessage message) {
+        if (!isConnected()) {
+            outboundQueue.enqueue(topic, message);
+            checkAndConnect();
+            return;
+        }
         try {
-            MqttMessage message = new MqttMessage();
-            message.setPayload(online ? "1".getBytes() : "0".getBytes());
-            message.setQos(2);
-            message.setRetained(true);
-            pendingTokens.add(mqttAndroidClient.publish("u/" + qiscusAccount.getEmail() + "/s", message));
+            track(message, mqttAndroidClient.publish(topic, message));
         } catch (MqttException | NullPointerException e) {
-            if (e instanceof MqttException) {
+            e.printStackTrace();
+            outboundQueue.enqueue(topic, message);
+        }
+    }
+
+    private void flushOutboundQueue() {
+        Pair<String, MqttMessage> pending;
+        while (isConnected() && (pending = outboundQueue.peek()) != null) {
+            try {
+                track(pending.second, mqttAndroidClient.publish(pending.first, pending.second));
+                outboundQueue.onFlushed();
+            } catch (MqttException | NullPointerException e) {
+                Log.e(TAG, "Failure flush outbound queue, will retry after reconnect");
                 e.printStackTrace();
+                return;
             }
         }
     }
 
+    /**
+     * @return Counters and latency of the realtime messages received, from arrival to delivery on the main thread
+     */
+    public QiscusRealtimeDispatchStats getRealtimeDispatchStats() {
+        return dispatcher.getStats();
+    }
+
+    /**
+     * @return Counters of the realtime messages published while the client was not connected
+     */
+    public QiscusOutboundQueueStats getOutboundQueueStats() {
+        return outboundQueue.getStats();
+    }
+
+    /**
+     * Publish the typing state of current user. Call it with true on every keystroke, the messages are throttled
+     * and "stopped" is sent automatically once the user stops typing.
+     *
+     * @param roomId  The room id
+     * @param topicId The topic id
+     * @param typing  Whether the user is typing
+     */
     public void setUserTyping(int roomId, int topicId, boolean typing) {
-        checkAndConnect();
+        typingPublisher.setTyping(roomId, topicId, typing);
+    }
+
+    private void publishTyping(int roomId, int topicId, boolean typing) {
+        if (!isConnected()) {
+            //Typing is only meaningful right now, no need to buffer it until reconnected
+            return;
+        }
         try {
             MqttMessage message = new MqttMessage();
             message.setPayload((typing ? "1" : "0").getBytes());
-            pendingTokens.add(mqttAndroidClient.publish("r/" + roomId + "/" + topicId + "/"
+            message.setQos(getQosConfig().getTypingQos());
+            track(message, mqttAndroidClient.publish("r/" + roomId + "/" + topicId + "/"
                     + qiscusAccount.getEmail() + "/t", message));
         } catch (MqttException | NullPointerException e) {
             e.printStackTrace();
@@ -295,7 +529,7 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     public void setUserRead(int roomId, int topicId, int commentId, String commentUniqueId) {
         QiscusApi.getInstance().updateCommentStatus(roomId, commentId, 0)
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(aVoid -> {
                 }, Throwable::printStackTrace);
@@ -303,12 +537,21 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     public void setUserDelivery(int roomId, int topicId, int commentId, String commentUniqueId) {
         QiscusApi.getInstance().updateCommentStatus(roomId, 0, commentId)
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(aVoid -> {
                 }, Throwable::printStackTrace);
     }
 
+    /**
+     * Only acknowledged publishes tell something about the connection health
+     */
+    private void track(MqttMessage message, IMqttDeliveryToken token) {
+        if (message.getQos() > 0 && isConnected()) {
+            connectionHealth.onPublished(token);
+        }
+    }
+
     private void checkAndConnect() {
         try {
             if (!mqttAndroidClient.isConnected()) {
@@ -323,76 +566,23 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     @Override
     public void connectionLost(Throwable cause) {
-        reconnectCounter++;
-        Log.e(TAG, "Lost connection, will try reconnect in " + RETRY_PERIOD * reconnectCounter + " ms");
         connecting = false;
+        stopHealthChecker();
         if (cause != null) {
             cause.printStackTrace();
         }
-        handler.postDelayed(fallbackConnect, RETRY_PERIOD * reconnectCounter);
+        scheduleReconnect("Lost connection");
     }
 
     @Override
     public void messageArrived(String topic, MqttMessage message) throws Exception {
-        if (topic.contains(qiscusAccount.getToken())) {
-            QiscusComment qiscusComment = jsonToComment(new String(message.getPayload()));
-            if (!qiscusComment.getSenderEmail().equals(qiscusAccount.getEmail())) {
-                setUserDelivery(qiscusComment.getRoomId(), qiscusComment.getTopicId(), qiscusComment.getId(), qiscusComment.getUniqueId());
-            }
-            EventBus.getDefault().post(new QiscusCommentReceivedEvent(qiscusComment));
-        } else if (topic.startsWith("r/") && topic.endsWith("/t")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Integer.parseInt(data[1]))
-                        .setTopicId(Integer.parseInt(data[2]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.TYPING)
-                        .setTyping("1".equals(new String(message.getPayload())));
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("r/") && topic.endsWith("/d")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                String[] payload = new String(message.getPayload()).split(":");
-                QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Integer.parseInt(data[1]))
-                        .setTopicId(Integer.parseInt(data[2]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.DELIVERED)
-                        .setCommentId(Integer.parseInt(payload[0]))
-                        .setCommentUniqueId(payload[1]);
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("r/") && topic.endsWith("/r")) {
-            String[] data = topic.split("/");
-            if (!data[3].equals(qiscusAccount.getEmail())) {
-                String[] payload = new String(message.getPayload()).split(":");
-                QiscusChatRoomEvent event = new QiscusChatRoomEvent()
-                        .setRoomId(Integer.parseInt(data[1]))
-                        .setTopicId(Integer.parseInt(data[2]))
-                        .setUser(data[3])
-                        .setEvent(QiscusChatRoomEvent.Event.READ)
-                        .setCommentId(Integer.parseInt(payload[0]))
-                        .setCommentUniqueId(payload[1]);
-                EventBus.getDefault().post(event);
-            }
-        } else if (topic.startsWith("u/") && topic.endsWith("/s")) {
-            String[] data = topic.split("/");
-            if (!data[1].equals(qiscusAccount.getEmail())) {
-                String[] status = new String(message.getPayload()).split(":");
-                Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
-                calendar.setTimeInMillis(Long.parseLong(status[1]));
-                QiscusUserStatusEvent event = new QiscusUserStatusEvent(data[1], "1".equals(status[0]),
-                        calendar.getTime());
-                EventBus.getDefault().post(event);
-            }
-        }
+        connectionHealth.onReceived();
+        dispatcher.enqueue(topic, message.getPayload());
     }
 
     @Override
     public void deliveryComplete(IMqttDeliveryToken token) {
-        pendingTokens.remove(token);
+        connectionHealth.onDelivered(token);
     }
 
     @Override
@@ -400,23 +590,14 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
         Log.i(TAG, "Connected...");
         try {
             connecting = false;
-            reconnectCounter = 0;
-            DisconnectedBufferOptions disconnectedBufferOptions = new DisconnectedBufferOptions();
-            disconnectedBufferOptions.setBufferEnabled(true);
-            disconnectedBufferOptions.setBufferSize(100);
-            disconnectedBufferOptions.setPersistBuffer(true);
-            disconnectedBufferOptions.setDeleteOldestMessages(true);
-            mqttAndroidClient.setBufferOpts(disconnectedBufferOptions);
-            listenComment();
-            if (fallBackListenRoom != null) {
-                handler.post(fallBackListenRoom);
-            }
-            if (fallBackListenUserStatus != null) {
-                handler.post(fallBackListenUserStatus);
-            }
-            pendingTokens.clear();
+            reconnectBackoff.reset();
+            resubscribeAll();
+            flushOutboundQueue();
+            //The will may have replaced our retained status while we were disconnected
+            publishUserStatus(Qiscus.isOnForeground(), true);
+            connectionHealth.reset();
             handler.removeCallbacks(fallbackConnect);
-            startFallbackChecker(FALLBACK_PERIOD);
+            startHealthChecker(HEALTH_CHECK_PERIOD);
         } catch (NullPointerException | IllegalArgumentException ignored) {
             //Do nothing
         }
@@ -425,13 +606,21 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
 
     @Override
     public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
-        reconnectCounter++;
-        Log.e(TAG, "Failure to connect, try again in " + RETRY_PERIOD * reconnectCounter + " ms");
         if (exception != null) {
             exception.printStackTrace();
         }
         connecting = false;
-        handler.postDelayed(fallbackConnect, RETRY_PERIOD * reconnectCounter);
+        scheduleReconnect("Failure to connect");
+    }
+
+    @Subscribe
+    public void onNetworkChanged(QiscusNetworkEvent event) {
+        if (event.isConnected() && Qiscus.hasSetupUser() && !isConnected()) {
+            Log.i(TAG, "Network is available, reconnect now");
+            handler.removeCallbacks(fallbackConnect);
+            reconnectBackoff.reset();
+            connect();
+        }
     }
 
     @Subscribe
@@ -439,6 +628,8 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
         switch (userEvent) {
             case LOGOUT:
                 disconnect();
+                subscriptionManager.clear();
+                outboundQueue.clear();
                 break;
         }
     }
@@ -455,7 +646,9 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
             qiscusComment.setSender(jsonObject.get("username").isJsonNull() ? null : jsonObject.get("username").getAsString());
             qiscusComment.setSenderEmail(jsonObject.get("email").getAsString());
             qiscusComment.setSenderAvatar(jsonObject.get("user_avatar").getAsString());
-            qiscusComment.setTime(dateFormat.parse(jsonObject.get("timestamp").getAsString()));
+            synchronized (dateFormat) {
+                qiscusComment.setTime(dateFormat.parse(jsonObject.get("timestamp").getAsString()));
+            }
             qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
             qiscusComment.setRoomName(jsonObject.get("room_name").isJsonNull() ?
                     qiscusComment.getSender() : jsonObject.get("room_name").getAsString());
@@ -487,23 +680,19 @@ public enum QiscusPusherApi implements MqttCallback, IMqttActionListener {
         return jsonToComment(gson.fromJson(json, JsonObject.class));
     }
 
+    /**
+     * Only check the foreground state periodically, the status is published on transitions and kept alive
+     * once per {@link #USER_STATUS_KEEP_ALIVE_PERIOD} while online
+     */
     private static void scheduleUserStatus() {
         Timer timer = new Timer("qiscus_online_status", true);
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
                 if (Qiscus.hasSetupUser()) {
-                    if (Qiscus.isOnForeground()) {
-                        INSTANCE.setOfflineCounter = 0;
-                        INSTANCE.setUserStatus(true);
-                    } else {
-                        if (INSTANCE.setOfflineCounter <= 2) {
-                            INSTANCE.setUserStatus(false);
-                            INSTANCE.setOfflineCounter++;
-                        }
-                    }
+                    INSTANCE.publishUserStatus(Qiscus.isOnForeground(), false);
                 }
             }
-        }, 0, 10000);
+        }, 0, USER_STATUS_CHECK_PERIOD);
     }
 }
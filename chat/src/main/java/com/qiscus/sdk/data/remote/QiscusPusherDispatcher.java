@@ -0,0 +1,429 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import com.qiscus.sdk.data.model.QiscusAccount;
+import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.event.QiscusChatRoomEvent;
+import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
+import com.qiscus.sdk.event.QiscusUserStatusEvent;
+import com.qiscus.sdk.util.QiscusSchedulers;
+
+import org.greenrobot.eventbus.EventBus;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Decode MQTT messages on a worker thread and deliver the resulting events to the main thread in batches,
+ * at most once per frame, on the vsync of {@link Choreographer}. Within a batch only the latest typing state of
+ * each user in a room and the latest status of each user are delivered. When the queue holds more than 512
+ * messages typing, status and receipt messages are dropped. Comments are queued up to 2048 messages, past that every
+ * new comment is dropped until the queue is drained and the dropped ones are fetched in order with sync, so a comment
+ * is never lost nor delivered out of order. Comments may arrive more than once with QoS 1, a comment which has
+ * already been delivered is ignored. The delivery of the newest comment of each room is reported once per batch.
+ * Counters of all of these are kept, see {@link QiscusPusherApi#getRealtimeDispatchStats()}.
+ */
+final class QiscusPusherDispatcher {
+    private static final String TAG = QiscusPusherDispatcher.class.getSimpleName();
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final int QUEUE_CAPACITY = 512;
+    private static final int COMMENT_QUEUE_CAPACITY = 2048;
+    private static final int MAX_RECEIVED_COMMENT_IDS = 500;
+
+    private final BlockingQueue<RawMessage> queue;
+    private final Handler handler;
+    private final Runnable flushRunnable = this::flush;
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> flush();
+    private volatile Choreographer choreographer;
+    private final List<PendingEvent> pendingEvents;
+    private final Map<String, Integer> pendingEventIndexes;
+    private final Set<Integer> receivedCommentIds;
+    private final Map<Integer, QiscusComment> pendingDeliveries;
+    private boolean flushScheduled;
+    private boolean commentOverflow;
+    private boolean resyncing;
+    private int lastCommentId;
+
+    private long receivedCount;
+    private long droppedCount;
+    private long duplicateCount;
+    private long coalescedCount;
+    private long deliveredCount;
+    private long totalLatency;
+    private long maxLatency;
+
+    private volatile QiscusAccount qiscusAccount;
+
+    QiscusPusherDispatcher() {
+        queue = new LinkedBlockingQueue<>();
+        handler = new Handler(Looper.getMainLooper());
+        //Choreographer belongs to the thread which gets it, the flush must follow the vsync of the main thread
+        handler.post(() -> choreographer = Choreographer.getInstance());
+        pendingEvents = new ArrayList<>();
+        pendingEventIndexes = new HashMap<>();
+        receivedCommentIds = new LinkedHashSet<>();
+        pendingDeliveries = new HashMap<>();
+
+        Thread worker = new Thread(this::processQueue, "qiscus_mqtt_dispatcher");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    void setQiscusAccount(QiscusAccount qiscusAccount) {
+        this.qiscusAccount = qiscusAccount;
+    }
+
+    /**
+     * Called from the MQTT callback, only queue the message so the callback thread returns quickly
+     */
+    void enqueue(String topic, byte[] payload) {
+        RawMessage rawMessage = new RawMessage(topic, payload);
+        boolean comment = isComment(topic);
+        synchronized (this) {
+            receivedCount++;
+            if (comment && (commentOverflow || queue.size() >= COMMENT_QUEUE_CAPACITY)) {
+                if (!commentOverflow) {
+                    Log.w(TAG, "Too many comments to decode, fetch the next ones with sync once the queue is drained");
+                    commentOverflow = true;
+                }
+                droppedCount++;
+                return;
+            }
+        }
+        if (!comment && queue.size() >= QUEUE_CAPACITY) {
+            Log.w(TAG, "Dispatcher queue is full, drop message of " + topic);
+            synchronized (this) {
+                droppedCount++;
+            }
+            return;
+        }
+        queue.add(rawMessage);
+    }
+
+    synchronized QiscusRealtimeDispatchStats getStats() {
+        return new QiscusRealtimeDispatchStats(receivedCount, droppedCount, duplicateCount, coalescedCount,
+                deliveredCount, deliveredCount == 0 ? 0 : totalLatency / deliveredCount, maxLatency, queue.size());
+    }
+
+    private void processQueue() {
+        while (true) {
+            try {
+                process(queue.take());
+                if (queue.isEmpty()) {
+                    resyncIfOverflowed();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private boolean isComment(String topic) {
+        QiscusAccount account = qiscusAccount;
+        return account != null && topic.startsWith(account.getToken());
+    }
+
+    private void process(RawMessage rawMessage) {
+        QiscusAccount account = qiscusAccount;
+        if (account == null) {
+            return;
+        }
+
+        String topic = rawMessage.topic;
+        if (topic.startsWith(account.getToken())) {
+            deliverComment(QiscusCommentCodec.decode(rawMessage.payload), account, rawMessage.receivedTime);
+        } else if (topic.startsWith("r/")) {
+            processRoomMessage(topic, rawMessage, account);
+        } else if (topic.startsWith("u/") && topic.endsWith("/s")) {
+            String user = topic.substring(2, topic.length() - 2);
+            if (!user.equals(account.getEmail())) {
+                String status = new String(rawMessage.payload, UTF_8);
+                int separator = status.indexOf(':');
+                //Older clients publish the status without the time
+                Date lastActive = separator < 0 ? new Date() : new Date(Long.parseLong(status.substring(separator + 1)));
+                publish("s/" + user, new QiscusUserStatusEvent(user, status.startsWith("1"), lastActive),
+                        rawMessage.receivedTime);
+            }
+        }
+    }
+
+    private void deliverComment(QiscusComment qiscusComment, QiscusAccount account, long receivedTime) {
+        if (!markReceived(qiscusComment.getId())) {
+            synchronized (this) {
+                duplicateCount++;
+            }
+            return;
+        }
+        synchronized (this) {
+            lastCommentId = Math.max(lastCommentId, qiscusComment.getId());
+        }
+        if (!qiscusComment.getSenderEmail().equals(account.getEmail())) {
+            synchronized (pendingEvents) {
+                QiscusComment pendingDelivery = pendingDeliveries.get(qiscusComment.getRoomId());
+                if (pendingDelivery == null || pendingDelivery.getId() < qiscusComment.getId()) {
+                    pendingDeliveries.put(qiscusComment.getRoomId(), qiscusComment);
+                }
+            }
+        }
+        //The chat screen shows received comments as soon as they arrive, classify them here instead of there
+        qiscusComment.prepareBindData();
+        publish(null, new QiscusCommentReceivedEvent(qiscusComment), receivedTime);
+    }
+
+    private void resyncIfOverflowed() {
+        int fromCommentId;
+        synchronized (this) {
+            if (!commentOverflow || resyncing) {
+                return;
+            }
+            resyncing = true;
+            fromCommentId = lastCommentId;
+        }
+        resync(fromCommentId, false);
+    }
+
+    /**
+     * Fetch the comments dropped while the queue was full, page after page. Comments are accepted again before the
+     * last sync, so nothing published in between is lost, the ones received twice are ignored as duplicates.
+     *
+     * @param lastSync true once comments are accepted again
+     */
+    private void resync(int fromCommentId, boolean lastSync) {
+        QiscusApi.getInstance().sync(fromCommentId)
+                .toList()
+                .subscribeOn(QiscusSchedulers.network())
+                .subscribe(qiscusComments -> {
+                    QiscusAccount account = qiscusAccount;
+                    int newestCommentId = fromCommentId;
+                    for (QiscusComment qiscusComment : qiscusComments) {
+                        newestCommentId = Math.max(newestCommentId, qiscusComment.getId());
+                        if (account != null) {
+                            deliverComment(qiscusComment, account, SystemClock.elapsedRealtime());
+                        }
+                    }
+
+                    boolean overflowAgain;
+                    synchronized (this) {
+                        overflowAgain = commentOverflow;
+                        if (!lastSync && qiscusComments.isEmpty()) {
+                            commentOverflow = false;
+                        } else if (lastSync && !overflowAgain) {
+                            resyncing = false;
+                        }
+                    }
+
+                    if (!lastSync && qiscusComments.isEmpty()) {
+                        resync(newestCommentId, true);
+                    } else if (!lastSync || overflowAgain) {
+                        resync(newestCommentId, false);
+                    }
+                }, throwable -> {
+                    throwable.printStackTrace();
+                    synchronized (this) {
+                        commentOverflow = false;
+                        resyncing = false;
+                    }
+                });
+    }
+
+    /**
+     * Topic of room is r/{roomId}/{topicId}/{user}/{t|d|r}
+     */
+    private void processRoomMessage(String topic, RawMessage rawMessage, QiscusAccount account) {
+        int roomEnd = topic.indexOf('/', 2);
+        int topicEnd = topic.indexOf('/', roomEnd + 1);
+        int userEnd = topic.lastIndexOf('/');
+        if (roomEnd < 0 || topicEnd < 0 || userEnd <= topicEnd || userEnd != topic.length() - 2) {
+            return;
+        }
+
+        String user = topic.substring(topicEnd + 1, userEnd);
+        if (user.equals(account.getEmail())) {
+            return;
+        }
+
+        QiscusChatRoomEvent event = new QiscusChatRoomEvent()
+                .setRoomId(parseInt(topic, 2, roomEnd))
+                .setTopicId(parseInt(topic, roomEnd + 1, topicEnd))
+                .setUser(user);
+
+        switch (topic.charAt(topic.length() - 1)) {
+            case 't':
+                event.setEvent(QiscusChatRoomEvent.Event.TYPING)
+                        .setTyping(rawMessage.payload.length == 1 && rawMessage.payload[0] == '1');
+                publish("t/" + event.getRoomId() + "/" + user, event, rawMessage.receivedTime);
+                break;
+            case 'd':
+            case 'r':
+                String data = new String(rawMessage.payload, UTF_8);
+                int separator = data.indexOf(':');
+                event.setEvent(topic.endsWith("/d") ? QiscusChatRoomEvent.Event.DELIVERED : QiscusChatRoomEvent.Event.READ)
+                        .setCommentId(Integer.parseInt(data.substring(0, separator)))
+                        .setCommentUniqueId(data.substring(separator + 1));
+                publish(null, event, rawMessage.receivedTime);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return false if the comment has been received before
+     */
+    private boolean markReceived(int commentId) {
+        synchronized (receivedCommentIds) {
+            if (!receivedCommentIds.add(commentId)) {
+                return false;
+            }
+            if (receivedCommentIds.size() > MAX_RECEIVED_COMMENT_IDS) {
+                Iterator<Integer> iterator = receivedCommentIds.iterator();
+                iterator.next();
+                iterator.remove();
+            }
+            return true;
+        }
+    }
+
+    private static int parseInt(String text, int start, int end) {
+        int result = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw new NumberFormatException("Invalid number in " + text);
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    /**
+     * @param coalesceKey  Events with the same key in a batch replace each other, null to always deliver
+     * @param receivedTime Time the message of the event was received, to measure the dispatch latency
+     */
+    private void publish(String coalesceKey, Object event, long receivedTime) {
+        PendingEvent pendingEvent = new PendingEvent(event, receivedTime);
+        synchronized (pendingEvents) {
+            Integer index = coalesceKey == null ? null : pendingEventIndexes.get(coalesceKey);
+            if (index != null) {
+                pendingEvents.set(index, pendingEvent);
+                synchronized (this) {
+                    coalescedCount++;
+                }
+            } else {
+                if (coalesceKey != null) {
+                    pendingEventIndexes.put(coalesceKey, pendingEvents.size());
+                }
+                pendingEvents.add(pendingEvent);
+            }
+
+            if (!flushScheduled) {
+                flushScheduled = true;
+                Choreographer mainChoreographer = choreographer;
+                if (mainChoreographer != null) {
+                    mainChoreographer.postFrameCallback(frameCallback);
+                } else {
+                    handler.post(flushRunnable);
+                }
+            }
+        }
+    }
+
+    private void flush() {
+        List<PendingEvent> events;
+        List<QiscusComment> deliveries;
+        synchronized (pendingEvents) {
+            events = new ArrayList<>(pendingEvents);
+            pendingEvents.clear();
+            pendingEventIndexes.clear();
+            deliveries = new ArrayList<>(pendingDeliveries.values());
+            pendingDeliveries.clear();
+            flushScheduled = false;
+        }
+
+        //The delivery of a comment also tells the older ones of the room have been delivered
+        for (QiscusComment qiscusComment : deliveries) {
+            QiscusPusherApi.getInstance().setUserDelivery(qiscusComment.getRoomId(), qiscusComment.getTopicId(),
+                    qiscusComment.getId(), qiscusComment.getUniqueId());
+        }
+
+        EventBus eventBus = EventBus.getDefault();
+        //Room events go to the screens of their room, the global bus only gets them if the app listens there
+        QiscusRoomEventRegistry roomEventRegistry = QiscusRoomEventRegistry.getInstance();
+        boolean postRoomEvents = eventBus.hasSubscriberForEvent(QiscusChatRoomEvent.class);
+        for (PendingEvent pendingEvent : events) {
+            if (pendingEvent.event instanceof QiscusChatRoomEvent) {
+                roomEventRegistry.dispatchRoomEvent((QiscusChatRoomEvent) pendingEvent.event);
+                if (postRoomEvents) {
+                    eventBus.post(pendingEvent.event);
+                }
+            } else {
+                eventBus.post(pendingEvent.event);
+            }
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        synchronized (this) {
+            for (PendingEvent pendingEvent : events) {
+                long latency = now - pendingEvent.receivedTime;
+                totalLatency += latency;
+                maxLatency = Math.max(maxLatency, latency);
+            }
+            deliveredCount += events.size();
+        }
+    }
+
+    private static class PendingEvent {
+        private final Object event;
+        private final long receivedTime;
+
+        private PendingEvent(Object event, long receivedTime) {
+            this.event = event;
+            this.receivedTime = receivedTime;
+        }
+    }
+
+    private static class RawMessage {
+        private final String topic;
+        private final byte[] payload;
+
+        private final long receivedTime;
+
+        private RawMessage(String topic, byte[] payload) {
+            this.topic = topic;
+            this.payload = payload;
+            receivedTime = SystemClock.elapsedRealtime();
+        }
+    }
+}
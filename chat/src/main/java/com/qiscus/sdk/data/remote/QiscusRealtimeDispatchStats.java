@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+/**
+ * Snapshot of the counters of received realtime messages, see {@link QiscusPusherApi#getRealtimeDispatchStats()}.
+ * Counters start from zero every time the app starts.
+ */
+public final class QiscusRealtimeDispatchStats {
+    private final long receivedCount;
+    private final long droppedCount;
+    private final long duplicateCount;
+    private final long coalescedCount;
+    private final long deliveredCount;
+    private final long averageLatency;
+    private final long maxLatency;
+    private final int queueSize;
+
+    QiscusRealtimeDispatchStats(long receivedCount, long droppedCount, long duplicateCount, long coalescedCount,
+                                long deliveredCount, long averageLatency, long maxLatency, int queueSize) {
+        this.receivedCount = receivedCount;
+        this.droppedCount = droppedCount;
+        this.duplicateCount = duplicateCount;
+        this.coalescedCount = coalescedCount;
+        this.deliveredCount = deliveredCount;
+        this.averageLatency = averageLatency;
+        this.maxLatency = maxLatency;
+        this.queueSize = queueSize;
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * @return Messages dropped because the decode queue was full, dropped comments are fetched again with sync
+     */
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    /**
+     * @return Comments received again after they had been delivered
+     */
+    public long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return Typing and status events replaced by a newer one of the same user within a frame
+     */
+    public long getCoalescedCount() {
+        return coalescedCount;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    /**
+     * @return Average time in millis from the arrival of a message to the delivery of its event
+     */
+    public long getAverageLatency() {
+        return averageLatency;
+    }
+
+    public long getMaxLatency() {
+        return maxLatency;
+    }
+
+    /**
+     * @return Messages waiting to be decoded
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    @Override
+    public String toString() {
+        return "QiscusRealtimeDispatchStats{" +
+                "receivedCount=" + receivedCount +
+                ", droppedCount=" + droppedCount +
+                ", duplicateCount=" + duplicateCount +
+                ", coalescedCount=" + coalescedCount +
+                ", deliveredCount=" + deliveredCount +
+                ", averageLatency=" + averageLatency +
+                ", maxLatency=" + maxLatency +
+                ", queueSize=" + queueSize +
+                '}';
+    }
+}
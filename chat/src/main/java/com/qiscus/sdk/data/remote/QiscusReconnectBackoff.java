@@ -0,0 +1,47 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import java.util.Random;
+
+/**
+ * Delay before the next reconnect attempt, doubled after every failure up to a cap. Half of the delay is
+ * randomized, so clients which lost their connection at the same time do not all come back at the same time.
+ */
+final class QiscusReconnectBackoff {
+    private static final long BASE_DELAY = 1000;
+    private static final long MAX_DELAY = 60000;
+    private static final int MAX_SHIFT = 16;
+
+    private final Random random;
+    private int attempt;
+
+    QiscusReconnectBackoff() {
+        random = new Random();
+    }
+
+    synchronized long nextDelay() {
+        long delay = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt, MAX_SHIFT));
+        attempt++;
+        long half = delay / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    synchronized void reset() {
+        attempt = 0;
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.util.Log;
+import android.util.SparseArray;
+
+import com.qiscus.sdk.event.QiscusChatRoomEvent;
+import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
+
+import org.greenrobot.eventbus.EventBus;
+import org.greenrobot.eventbus.Subscribe;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import rx.BackpressureOverflow;
+import rx.Emitter;
+import rx.Observable;
+
+/**
+ * Route realtime events to the subscribers of their room only. Typing and receipts are handed over by the
+ * dispatcher directly, they only reach the global {@link EventBus} when the app subscribes them there. Comments
+ * also come from sync, so they are taken from the {@link EventBus}. Events arrive on the main thread already
+ * batched per frame by the dispatcher. A slow subscriber only gets the latest typing event, and at most
+ * 1000 other events are buffered for it.
+ */
+public enum QiscusRoomEventRegistry {
+    INSTANCE;
+    private static final String TAG = QiscusRoomEventRegistry.class.getSimpleName();
+    private static final long MAX_BUFFERED_EVENTS = 1000;
+
+    private final SparseArray<List<RoomEmitter>> roomEmitters;
+
+    QiscusRoomEventRegistry() {
+        roomEmitters = new SparseArray<>();
+        EventBus.getDefault().register(this);
+    }
+
+    public static QiscusRoomEventRegistry getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Observe comment and room events of a room, {@link QiscusCommentReceivedEvent} and {@link QiscusChatRoomEvent}
+     *
+     * @param roomId The room id
+     * @return Observable of the events
+     */
+    public Observable<Object> observeRoom(int roomId) {
+        Observable<Object> events = observe(roomId, false, Emitter.BackpressureMode.NONE)
+                .onBackpressureBuffer(MAX_BUFFERED_EVENTS,
+                        () -> Log.w(TAG, "Too many events of room " + roomId + ", drop the oldest"),
+                        BackpressureOverflow.ON_OVERFLOW_DROP_OLDEST);
+        Observable<Object> typingEvents = observe(roomId, true, Emitter.BackpressureMode.LATEST);
+        return Observable.merge(events, typingEvents);
+    }
+
+    /**
+     * @param roomId    The room id
+     * @param eventType Type of the events, e.g. {@link QiscusChatRoomEvent}
+     * @param <T>       Type of the events
+     * @return Observable of the events of the room with that type
+     */
+    public <T> Observable<T> observeRoom(int roomId, Class<T> eventType) {
+        return observeRoom(roomId).ofType(eventType);
+    }
+
+    private Observable<Object> observe(int roomId, boolean typing, Emitter.BackpressureMode backpressureMode) {
+        return Observable.create(emitter -> {
+            RoomEmitter roomEmitter = new RoomEmitter(emitter, typing);
+            addEmitter(roomId, roomEmitter);
+            emitter.setCancellation(() -> removeEmitter(roomId, roomEmitter));
+        }, backpressureMode);
+    }
+
+    private void addEmitter(int roomId, RoomEmitter roomEmitter) {
+        synchronized (roomEmitters) {
+            List<RoomEmitter> emitters = roomEmitters.get(roomId);
+            if (emitters == null) {
+                emitters = new CopyOnWriteArrayList<>();
+                roomEmitters.put(roomId, emitters);
+            }
+            emitters.add(roomEmitter);
+        }
+    }
+
+    private void removeEmitter(int roomId, RoomEmitter roomEmitter) {
+        synchronized (roomEmitters) {
+            List<RoomEmitter> emitters = roomEmitters.get(roomId);
+            if (emitters != null) {
+                emitters.remove(roomEmitter);
+                if (emitters.isEmpty()) {
+                    roomEmitters.remove(roomId);
+                }
+            }
+        }
+    }
+
+    private void dispatch(int roomId, Object event, boolean typing) {
+        List<RoomEmitter> emitters;
+        synchronized (roomEmitters) {
+            emitters = roomEmitters.get(roomId);
+        }
+        if (emitters != null) {
+            for (RoomEmitter roomEmitter : emitters) {
+                if (roomEmitter.typing == typing) {
+                    roomEmitter.emitter.onNext(event);
+                }
+            }
+        }
+    }
+
+    /**
+     * Called by {@link QiscusPusherDispatcher} on the main thread
+     */
+    void dispatchRoomEvent(QiscusChatRoomEvent event) {
+        dispatch(event.getRoomId(), event, event.getEvent() == QiscusChatRoomEvent.Event.TYPING);
+    }
+
+    @Subscribe
+    public void onCommentReceivedEvent(QiscusCommentReceivedEvent event) {
+        dispatch(event.getQiscusComment().getRoomId(), event, false);
+    }
+
+    private static class RoomEmitter {
+        private final Emitter<Object> emitter;
+        private final boolean typing;
+
+        private RoomEmitter(Emitter<Object> emitter, boolean typing) {
+            this.emitter = emitter;
+            this.typing = typing;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reference counted set of MQTT topics the client should be subscribed to. A topic is subscribed when its
+ * first listener comes and unsubscribed when its last listener leaves, and the whole set is what gets
+ * subscribed again after a reconnect.
+ */
+final class QiscusSubscriptionManager {
+    private final Map<String, Integer> refCounts;
+
+    QiscusSubscriptionManager() {
+        refCounts = new LinkedHashMap<>();
+    }
+
+    /**
+     * @return Topics which had no listener before and need to be subscribed
+     */
+    synchronized List<String> acquire(Collection<String> topics) {
+        List<String> newTopics = new ArrayList<>();
+        for (String topic : topics) {
+            Integer count = refCounts.get(topic);
+            if (count == null) {
+                refCounts.put(topic, 1);
+                newTopics.add(topic);
+            } else {
+                refCounts.put(topic, count + 1);
+            }
+        }
+        return newTopics;
+    }
+
+    /**
+     * @return Topics which have no listener anymore and need to be unsubscribed
+     */
+    synchronized List<String> release(Collection<String> topics) {
+        List<String> removedTopics = new ArrayList<>();
+        for (String topic : topics) {
+            Integer count = refCounts.get(topic);
+            if (count == null) {
+                continue;
+            }
+            if (count <= 1) {
+                refCounts.remove(topic);
+                removedTopics.add(topic);
+            } else {
+                refCounts.put(topic, count - 1);
+            }
+        }
+        return removedTopics;
+    }
+
+    synchronized List<String> getTopics() {
+        return new ArrayList<>(refCounts.keySet());
+    }
+
+    synchronized void clear() {
+        refCounts.clear();
+    }
+}
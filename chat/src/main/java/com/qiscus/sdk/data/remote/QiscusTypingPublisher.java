@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.SparseArray;
+
+import com.qiscus.sdk.Qiscus;
+
+/**
+ * Throttle the typing state published for each room. While the user keeps typing, "typing" is sent at most once
+ * per typing publish interval, and a single "stopped" is sent when the user stops or has not typed anything for
+ * the typing timeout, see {@link com.qiscus.sdk.data.model.QiscusChatConfig#setTypingPublishInterval(long)}
+ * and {@link com.qiscus.sdk.data.model.QiscusChatConfig#setTypingTimeout(long)}.
+ * Every state is kept and changed on the main thread.
+ */
+final class QiscusTypingPublisher {
+    private final Handler handler;
+    private final Publisher publisher;
+    private final SparseArray<RoomTyping> rooms;
+
+    QiscusTypingPublisher(Publisher publisher) {
+        this.publisher = publisher;
+        handler = new Handler(Looper.getMainLooper());
+        rooms = new SparseArray<>();
+    }
+
+    void setTyping(int roomId, int topicId, boolean typing) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            handler.post(() -> setTyping(roomId, topicId, typing));
+            return;
+        }
+
+        RoomTyping roomTyping = rooms.get(roomId);
+        if (typing) {
+            if (roomTyping == null) {
+                roomTyping = new RoomTyping(roomId, topicId);
+                rooms.put(roomId, roomTyping);
+            }
+            roomTyping.onKeystroke();
+        } else if (roomTyping != null) {
+            roomTyping.stop();
+        }
+    }
+
+    private class RoomTyping implements Runnable {
+        private final int roomId;
+        private final int topicId;
+        private long lastPublishTime;
+
+        private RoomTyping(int roomId, int topicId) {
+            this.roomId = roomId;
+            this.topicId = topicId;
+        }
+
+        private void onKeystroke() {
+            long now = SystemClock.elapsedRealtime();
+            if (lastPublishTime == 0 || now - lastPublishTime >= Qiscus.getChatConfig().getTypingPublishInterval()) {
+                lastPublishTime = now;
+                publisher.publishTyping(roomId, topicId, true);
+            }
+            handler.removeCallbacks(this);
+            handler.postDelayed(this, Qiscus.getChatConfig().getTypingTimeout());
+        }
+
+        private void stop() {
+            handler.removeCallbacks(this);
+            rooms.remove(roomId);
+            publisher.publishTyping(roomId, topicId, false);
+        }
+
+        @Override
+        public void run() {
+            stop();
+        }
+    }
+
+    interface Publisher {
+        void publishTyping(int roomId, int topicId, boolean typing);
+    }
+}
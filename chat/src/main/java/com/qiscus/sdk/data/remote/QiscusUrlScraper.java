@@ -16,11 +16,11 @@
 
 package com.qiscus.sdk.data.remote;
 
+import com.qiscus.sdk.util.QiscusSchedulers;
 import com.schinizer.rxunfurl.RxUnfurl;
 import com.schinizer.rxunfurl.model.PreviewData;
 
 import rx.Observable;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : December 09, 2016
@@ -35,7 +35,7 @@ public enum QiscusUrlScraper {
 
     QiscusUrlScraper() {
         rxUnfurl = new RxUnfurl.Builder()
-                .scheduler(Schedulers.io())
+                .scheduler(QiscusSchedulers.network())
                 .build();
     }
 
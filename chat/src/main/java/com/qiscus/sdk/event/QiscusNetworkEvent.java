@@ -0,0 +1,52 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.event;
+
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor.NetworkType;
+
+/**
+ * Posted by QiscusConnectivityMonitor when the device switches to another type of network.
+ */
+public class QiscusNetworkEvent {
+    private NetworkType previousType;
+    private NetworkType networkType;
+
+    public QiscusNetworkEvent(NetworkType previousType, NetworkType networkType) {
+        this.previousType = previousType;
+        this.networkType = networkType;
+    }
+
+    public NetworkType getPreviousType() {
+        return previousType;
+    }
+
+    public NetworkType getNetworkType() {
+        return networkType;
+    }
+
+    public boolean isConnected() {
+        return networkType != NetworkType.NONE;
+    }
+
+    @Override
+    public String toString() {
+        return "QiscusNetworkEvent{" +
+                "previousType=" + previousType +
+                ", networkType=" + networkType +
+                '}';
+    }
+}
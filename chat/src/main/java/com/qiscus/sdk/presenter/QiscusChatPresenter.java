@@ -18,6 +18,8 @@ package com.qiscus.sdk.presenter;
 
 import android.net.Uri;
 import android.support.v4.util.Pair;
+import android.text.TextUtils;
+import android.view.Choreographer;
 import android.webkit.MimeTypeMap;
 
 import com.qiscus.sdk.Qiscus;
@@ -27,27 +29,30 @@ import com.qiscus.sdk.data.model.QiscusChatRoom;
 import com.qiscus.sdk.data.model.QiscusComment;
 import com.qiscus.sdk.data.remote.QiscusApi;
 import com.qiscus.sdk.data.remote.QiscusPusherApi;
+import com.qiscus.sdk.data.remote.QiscusRoomEventRegistry;
 import com.qiscus.sdk.event.QiscusChatRoomEvent;
 import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
 import com.qiscus.sdk.util.QiscusFileUtil;
 import com.qiscus.sdk.util.QiscusImageUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
 import org.json.JSONObject;
 
 import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
 import rx.functions.Func2;
-import rx.schedulers.Schedulers;
 
 public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.View> {
 
@@ -56,6 +61,8 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
     private QiscusAccount qiscusAccount;
     private AtomicInteger lastDeliveredCommentId;
     private AtomicInteger lastReadCommentId;
+    private final List<QiscusComment> receivedComments = new ArrayList<>();
+    private final Choreographer.FrameCallback receivedCommentsCallback = frameTimeNanos -> onGotNewComments();
     private Func2<QiscusComment, QiscusComment, Integer> commentComparator = (lhs, rhs) -> lhs.getId() != -1 && rhs.getId() != -1 ?
             QiscusAndroidUtil.compare(rhs.getId(), lhs.getId()) : rhs.getTime().compareTo(lhs.getTime());
 
@@ -70,36 +77,29 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
         updateReadState();
 
         listenRoomEvent();
-        if (!EventBus.getDefault().isRegistered(this)) {
-            EventBus.getDefault().register(this);
-        }
-    }
-
-    private void doInIo(Runnable runnable) {
-        Observable.just(null)
-                .doOnNext(o -> runnable.run())
-                .subscribeOn(Schedulers.io())
-                .observeOn(AndroidSchedulers.mainThread())
-                .compose(bindToLifecycle())
-                .subscribe(o -> {
-                }, throwable -> {
-                });
     }
 
     private void updateReadState() {
-        doInIo(() -> {
+        QiscusSchedulers.runOnDb(() -> {
             updateLastReadComment(Qiscus.getDataStore().getLatestReadComment(currentTopicId));
             updateLastDeliveredComment(Qiscus.getDataStore().getLatestDeliveredComment(currentTopicId));
         });
     }
 
     private void commentSuccess(QiscusComment qiscusComment) {
+        mergeSuccessState(qiscusComment);
+        Qiscus.getDataStore().addOrUpdate(qiscusComment);
+    }
+
+    /**
+     * A comment which reached the server is at least on qiscus, but keep the delivered or read state if already saved
+     */
+    private static void mergeSuccessState(QiscusComment qiscusComment) {
         qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
         QiscusComment savedQiscusComment = Qiscus.getDataStore().getComment(qiscusComment.getId(), qiscusComment.getUniqueId());
         if (savedQiscusComment != null && savedQiscusComment.getState() > qiscusComment.getState()) {
             qiscusComment.setState(savedQiscusComment.getState());
         }
-        Qiscus.getDataStore().addOrUpdate(qiscusComment);
     }
 
     private void commentFail(QiscusComment qiscusComment) {
@@ -125,7 +125,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 .doOnSubscribe(() -> Qiscus.getDataStore().add(qiscusComment))
                 .doOnNext(this::commentSuccess)
                 .doOnError(throwable -> commentFail(qiscusComment))
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
                 .subscribe(commentSend -> {
@@ -178,7 +178,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     qiscusComment.setDownloading(false);
                     commentFail(qiscusComment);
                 })
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.transfer())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
                 .subscribe(commentSend -> {
@@ -204,7 +204,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     .doOnSubscribe(() -> Qiscus.getDataStore().addOrUpdate(qiscusComment))
                     .doOnNext(this::commentSuccess)
                     .doOnError(throwable -> commentFail(qiscusComment))
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .subscribe(commentSend -> {
@@ -240,7 +240,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                         qiscusComment.setDownloading(false);
                         commentFail(qiscusComment);
                     })
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .subscribe(commentSend -> {
@@ -271,7 +271,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                         qiscusComment.setDownloading(false);
                         commentFail(qiscusComment);
                     })
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.transfer())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .subscribe(commentSend -> {
@@ -288,13 +288,14 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
     }
 
     public void deleteComment(QiscusComment qiscusComment) {
-        doInIo(() -> Qiscus.getDataStore().delete(qiscusComment));
+        QiscusSchedulers.runOnDb(() -> Qiscus.getDataStore().delete(qiscusComment));
         view.onCommentDeleted(qiscusComment);
     }
 
-    private Observable<Pair<QiscusChatRoom, List<QiscusComment>>> getInitRoomData() {
-        return QiscusApi.getInstance().getChatRoomComments(room.getId())
+    private Observable<Pair<QiscusChatRoom, List<QiscusComment>>> getInitRoomData(int afterCommentId) {
+        return QiscusApi.getInstance().getChatRoomComments(room.getId(), afterCommentId)
                 .doOnNext(roomData -> {
+                    classifyComments(roomData.second);
                     checkForLastRead(roomData.second);
                     for (QiscusComment qiscusComment : roomData.second) {
                         if (qiscusComment.getId() > lastDeliveredCommentId.get()) {
@@ -315,7 +316,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     roomData.first.setSubtitle(room.getSubtitle());
                     Qiscus.getDataStore().addOrUpdate(roomData.first);
                 })
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.network())
                 .onErrorReturn(throwable -> null);
     }
 
@@ -342,8 +343,21 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     Qiscus.getDataStore().addOrUpdate(qiscusComment);
                 })
                 .toSortedList(commentComparator)
-                .doOnNext(this::checkForLastRead)
-                .subscribeOn(Schedulers.io());
+                .doOnNext(comments -> {
+                    classifyComments(comments);
+                    checkForLastRead(comments);
+                })
+                .subscribeOn(QiscusSchedulers.network());
+    }
+
+    /**
+     * Classify comments on the background thread, the type, the sender and the day are cached in each comment
+     * so the adapter only reads them on the main thread
+     */
+    private static void classifyComments(List<QiscusComment> qiscusComments) {
+        for (QiscusComment qiscusComment : qiscusComments) {
+            qiscusComment.prepareBindData();
+        }
     }
 
     private Observable<List<QiscusComment>> getLocalComments(int count) {
@@ -357,6 +371,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     return comments;
                 })
                 .doOnNext(comments -> {
+                    classifyComments(comments);
                     checkForLastRead(comments);
                     for (QiscusComment qiscusComment : comments) {
                         if (qiscusComment.getState() == QiscusComment.STATE_SENDING) {
@@ -375,19 +390,45 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                         }
                     }
                 })
-                .subscribeOn(Schedulers.io());
+                .subscribeOn(QiscusSchedulers.db());
     }
 
+    /**
+     * Show the comments saved locally right away, then ask the server for the comments newer than them and only
+     * apply the comments which are new or changed. If more than a page of comments is newer than the local ones, or
+     * the comments of the server do not connect to the local ones, the local ones are too old and they are replaced
+     * by the latest page.
+     *
+     * @param count Count of comments to load
+     */
     public void loadComments(int count) {
-        Observable.merge(getInitRoomData(), getLocalComments(count).map(comments -> Pair.create(room, comments)))
-                .filter(qiscusChatRoomListPair -> qiscusChatRoomListPair != null)
-                .subscribeOn(Schedulers.newThread())
+        getLocalComments(count)
+                .observeOn(AndroidSchedulers.mainThread())
+                .doOnNext(comments -> {
+                    //Keep the loading until the server answers instead of showing an empty room
+                    if (view != null && !comments.isEmpty()) {
+                        view.initRoomData(room, comments);
+                    }
+                })
+                .observeOn(QiscusSchedulers.network())
+                .flatMap(localComments -> getLatestRoomData(getLastCommentId(localComments), count)
+                        .map(roomData -> roomData == null ? null : new RoomUpdate(roomData.first, localComments,
+                                roomData.second)))
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
-                .subscribe(roomData -> {
+                .subscribe(roomUpdate -> {
                     if (view != null) {
-                        room = roomData.first;
-                        view.initRoomData(roomData.first, roomData.second);
+                        if (roomUpdate != null) {
+                            room = roomUpdate.room;
+                            if (roomUpdate.continuous) {
+                                view.initRoomData(roomUpdate.room, roomUpdate.comments);
+                            } else {
+                                view.replaceRoomData(roomUpdate.room, roomUpdate.comments);
+                            }
+                        } else {
+                            //The server can not be reached, show the empty room if nothing is saved locally
+                            view.showComments(new ArrayList<>());
+                        }
                         view.dismissLoading();
                     }
                 }, throwable -> {
@@ -399,6 +440,49 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 });
     }
 
+    /**
+     * @param afterCommentId Id of the newest local comment, 0 if there is none
+     * @param count          Count of comments of a page
+     * @return The room with comments up to the newest one of the room, null if the server can not be reached
+     */
+    private Observable<Pair<QiscusChatRoom, List<QiscusComment>>> getLatestRoomData(int afterCommentId, int count) {
+        return getInitRoomData(afterCommentId)
+                .flatMap(roomData -> afterCommentId > 0 && roomData != null && roomData.second.size() >= count
+                        && startsRightAfter(roomData.second, afterCommentId) ?
+                        //A full page after the local comments may not reach the newest comment, ask for the latest page
+                        getInitRoomData(0) : Observable.just(roomData));
+    }
+
+    /**
+     * A page which contains the comment, or which does not follow it, is already the latest page,
+     * e.g. from a server which ignores after_comment_id, so asking for the latest page again would return it again
+     *
+     * @return Whether the oldest comment of the page comes right after the comment
+     */
+    private static boolean startsRightAfter(List<QiscusComment> qiscusComments, int commentId) {
+        QiscusComment oldestComment = null;
+        for (QiscusComment qiscusComment : qiscusComments) {
+            if (qiscusComment.getId() == -1) {
+                continue;
+            }
+            if (qiscusComment.getId() <= commentId) {
+                return false;
+            }
+            if (oldestComment == null || qiscusComment.getId() < oldestComment.getId()) {
+                oldestComment = qiscusComment;
+            }
+        }
+        return oldestComment != null && oldestComment.getCommentBeforeId() == commentId;
+    }
+
+    private static int getLastCommentId(List<QiscusComment> qiscusComments) {
+        int lastCommentId = 0;
+        for (QiscusComment qiscusComment : qiscusComments) {
+            lastCommentId = Math.max(lastCommentId, qiscusComment.getId());
+        }
+        return lastCommentId;
+    }
+
     private List<QiscusComment> cleanFailedComments(List<QiscusComment> qiscusComments) {
         List<QiscusComment> comments = new ArrayList<>();
         for (QiscusComment qiscusComment : qiscusComments) {
@@ -445,6 +529,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     return comments;
                 })
                 .doOnNext(comments -> {
+                    classifyComments(comments);
                     checkForLastRead(comments);
                     for (QiscusComment comment : comments) {
                         if (qiscusComment.getState() == QiscusComment.STATE_SENDING) {
@@ -473,7 +558,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                             }
                             return comments1;
                         }))
-                .subscribeOn(Schedulers.newThread())
+                .subscribeOn(QiscusSchedulers.db())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
                 .subscribe(comments -> {
@@ -490,11 +575,53 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 });
     }
 
+    /**
+     * Load comments newer than a comment from the local store, used to load again comments which have been
+     * evicted from the view while scrolling back through a long room
+     *
+     * @param qiscusComment The newest comment which is still shown
+     * @param count         Count of comments to load
+     */
+    public void loadNewerCommentThan(QiscusComment qiscusComment, int count) {
+        Qiscus.getDataStore().getObservableNewerCommentsThan(qiscusComment, currentTopicId, count + 1)
+                .flatMap(Observable::from)
+                .filter(qiscusComment1 -> !qiscusComment1.getUniqueId().equals(qiscusComment.getUniqueId()))
+                .filter(qiscusComment1 -> qiscusComment.getId() == -1 || qiscusComment1.getId() == -1
+                        || qiscusComment1.getId() > qiscusComment.getId())
+                .toSortedList(commentComparator)
+                .doOnNext(comments -> {
+                    classifyComments(comments);
+                    checkForLastRead(comments);
+                })
+                .subscribeOn(QiscusSchedulers.db())
+                .observeOn(AndroidSchedulers.mainThread())
+                .compose(bindToLifecycle())
+                .subscribe(comments -> {
+                    if (view != null) {
+                        view.onLoadNewer(comments);
+                    }
+                }, throwable -> {
+                    throwable.printStackTrace();
+                    if (view != null) {
+                        view.showError("Failed to load comments!");
+                        view.dismissLoading();
+                    }
+                });
+    }
+
     private void listenRoomEvent() {
         QiscusPusherApi.getInstance().listenRoom(room);
+        QiscusRoomEventRegistry.getInstance().observeRoom(room.getId())
+                .compose(bindToLifecycle())
+                .subscribe(event -> {
+                    if (event instanceof QiscusCommentReceivedEvent) {
+                        onCommentReceivedEvent((QiscusCommentReceivedEvent) event);
+                    } else if (event instanceof QiscusChatRoomEvent) {
+                        onRoomEvent((QiscusChatRoomEvent) event);
+                    }
+                }, Throwable::printStackTrace);
     }
 
-    @Subscribe
     public void onRoomEvent(QiscusChatRoomEvent event) {
         if (event.getTopicId() == currentTopicId) {
             switch (event.getEvent()) {
@@ -502,44 +629,39 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                     view.onUserTyping(event.getUser(), event.isTyping());
                     break;
                 case DELIVERED:
-                    QiscusComment deliveredComment = Qiscus.getDataStore()
-                            .getComment(event.getCommentId(), event.getCommentUniqueId());
-                    if (deliveredComment != null) {
-                        deliveredComment.setId(event.getCommentId());
-                        updateLastDeliveredComment(deliveredComment);
-                        doInIo(() -> {
-                            if (QiscusComment.STATE_DELIVERED > deliveredComment.getState()) {
-                                deliveredComment.setState(QiscusComment.STATE_DELIVERED);
-                                Qiscus.getDataStore().update(deliveredComment);
-                            }
-                        });
-                    } else {
+                    //Receipts of older comments, e.g. from other members of a group, change nothing
+                    if (event.getCommentId() > lastDeliveredCommentId.get()) {
                         lastDeliveredCommentId.set(event.getCommentId());
                         view.updateLastDeliveredComment(lastDeliveredCommentId.get());
+                        saveCommentState(event.getCommentId(), event.getCommentUniqueId(), QiscusComment.STATE_DELIVERED);
                     }
                     break;
                 case READ:
-                    QiscusComment readComment = Qiscus.getDataStore()
-                            .getComment(event.getCommentId(), String.valueOf(event.getCommentId()));
-                    if (readComment != null) {
-                        readComment.setId(event.getCommentId());
-                        updateLastReadComment(readComment);
-                        doInIo(() -> {
-                            if (QiscusComment.STATE_READ > readComment.getState()) {
-                                readComment.setState(QiscusComment.STATE_READ);
-                                Qiscus.getDataStore().update(readComment);
-                            }
-                        });
-                    } else {
+                    if (event.getCommentId() > lastReadCommentId.get()) {
                         lastReadCommentId.set(event.getCommentId());
-                        lastDeliveredCommentId.set(lastReadCommentId.get());
+                        lastDeliveredCommentId.set(Math.max(lastDeliveredCommentId.get(), lastReadCommentId.get()));
                         view.updateLastReadComment(lastReadCommentId.get());
+                        saveCommentState(event.getCommentId(), String.valueOf(event.getCommentId()), QiscusComment.STATE_READ);
                     }
                     break;
             }
         }
     }
 
+    /**
+     * Only the watermark comment is saved, the latest read and delivered comments are read back from it
+     */
+    private void saveCommentState(int commentId, String commentUniqueId, int state) {
+        QiscusSchedulers.runOnDb(() -> {
+            QiscusComment qiscusComment = Qiscus.getDataStore().getComment(commentId, commentUniqueId);
+            if (qiscusComment != null && state > qiscusComment.getState()) {
+                qiscusComment.setId(commentId);
+                qiscusComment.setState(state);
+                Qiscus.getDataStore().update(qiscusComment);
+            }
+        });
+    }
+
     private void updateLastReadComment(QiscusComment qiscusComment) {
         if (qiscusComment != null && qiscusComment.getId() > lastReadCommentId.get()) {
             lastReadCommentId.set(qiscusComment.getId());
@@ -563,51 +685,88 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
         }
     }
 
-    @Subscribe
     public void onCommentReceivedEvent(QiscusCommentReceivedEvent event) {
         if (event.getQiscusComment().getTopicId() == currentTopicId) {
-            onGotNewComment(event.getQiscusComment());
+            synchronized (receivedComments) {
+                receivedComments.add(event.getQiscusComment());
+                if (receivedComments.size() == 1) {
+                    Choreographer.getInstance().postFrameCallback(receivedCommentsCallback);
+                }
+            }
         }
     }
 
-    private void onGotNewComment(QiscusComment qiscusComment) {
-        if (qiscusComment.getSenderEmail().equalsIgnoreCase(qiscusAccount.getEmail())) {
-            doInIo(() -> commentSuccess(qiscusComment));
-        } else {
-            updateLastReadComment(qiscusComment);
-            qiscusComment.setState(QiscusComment.STATE_READ);
-            doInIo(() -> Qiscus.getDataStore().addOrUpdate(qiscusComment));
+    /**
+     * Handle the comments received within a frame together. The view gets them in one call as soon as the
+     * frame starts, then they are saved in one transaction and only the newest of them is marked as read.
+     */
+    private void onGotNewComments() {
+        List<QiscusComment> comments;
+        synchronized (receivedComments) {
+            comments = new ArrayList<>(receivedComments);
+            receivedComments.clear();
+        }
+        if (room == null || view == null || comments.isEmpty()) {
+            return;
         }
 
-        if (qiscusComment.isAttachment()) {
-            doInIo(() -> {
-                String path = QiscusFileUtil.generateFilePath(qiscusComment.getAttachmentName(), qiscusComment.getTopicId());
-                boolean exist = QiscusFileUtil.isContains(path);
-                if (!exist) {
-                    String message = qiscusComment.getMessage();
-                    int fileNameEndIndex = message.lastIndexOf(" [/file]");
-                    int fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
-                    String fileName = message.substring(fileNameBeginIndex, fileNameEndIndex);
-                    path = QiscusFileUtil.generateFilePath(fileName, qiscusComment.getTopicId());
-                    exist = QiscusFileUtil.isContains(path);
-                }
-                if (exist) {
-                    Qiscus.getDataStore().addOrUpdateLocalPath(qiscusComment.getTopicId(), qiscusComment.getId(), path);
+        QiscusComment lastOthersComment = null;
+        for (QiscusComment qiscusComment : comments) {
+            if (qiscusComment.getSenderEmail().equalsIgnoreCase(qiscusAccount.getEmail())) {
+                qiscusComment.setState(QiscusComment.STATE_ON_QISCUS);
+            } else {
+                qiscusComment.setState(QiscusComment.STATE_READ);
+                if (lastOthersComment == null || qiscusComment.getId() > lastOthersComment.getId()) {
+                    lastOthersComment = qiscusComment;
                 }
-            });
+            }
         }
+        view.onNewComments(comments);
 
-        if (qiscusComment.getTopicId() == currentTopicId) {
-            doInIo(() -> {
-                if (!qiscusComment.getSenderEmail().equalsIgnoreCase(qiscusAccount.getEmail())
-                        && QiscusCacheManager.getInstance().getLastChatActivity().first) {
-                    QiscusPusherApi.getInstance().setUserRead(room.getId(),
-                            currentTopicId,
-                            qiscusComment.getId(),
-                            qiscusComment.getUniqueId());
-                }
-            });
-            view.onNewComment(qiscusComment);
+        int roomId = room.getId();
+        QiscusComment lastReadComment = lastOthersComment;
+        QiscusSchedulers.runOnDb(() -> saveReceivedComments(roomId, comments, lastReadComment));
+    }
+
+    private void saveReceivedComments(int roomId, List<QiscusComment> qiscusComments, QiscusComment lastOthersComment) {
+        for (QiscusComment qiscusComment : qiscusComments) {
+            if (qiscusComment.getState() == QiscusComment.STATE_ON_QISCUS) {
+                mergeSuccessState(qiscusComment);
+            }
+        }
+        Qiscus.getDataStore().addOrUpdate(qiscusComments);
+
+        for (QiscusComment qiscusComment : qiscusComments) {
+            if (qiscusComment.isAttachment()) {
+                saveLocalPath(qiscusComment);
+            }
+        }
+
+        if (lastOthersComment != null) {
+            updateLastReadComment(lastOthersComment);
+            if (QiscusCacheManager.getInstance().getLastChatActivity().first) {
+                QiscusPusherApi.getInstance().setUserRead(roomId, currentTopicId,
+                        lastOthersComment.getId(), lastOthersComment.getUniqueId());
+            }
+        }
+    }
+
+    /**
+     * Link a received attachment to the file if it has been downloaded before
+     */
+    private void saveLocalPath(QiscusComment qiscusComment) {
+        String path = QiscusFileUtil.generateFilePath(qiscusComment.getAttachmentName(), qiscusComment.getTopicId());
+        boolean exist = QiscusFileUtil.isContains(path);
+        if (!exist) {
+            String message = qiscusComment.getMessage();
+            int fileNameEndIndex = message.lastIndexOf(" [/file]");
+            int fileNameBeginIndex = message.lastIndexOf('/', fileNameEndIndex) + 1;
+            String fileName = message.substring(fileNameBeginIndex, fileNameEndIndex);
+            path = QiscusFileUtil.generateFilePath(fileName, qiscusComment.getTopicId());
+            exist = QiscusFileUtil.isContains(path);
+        }
+        if (exist) {
+            Qiscus.getDataStore().addOrUpdateLocalPath(qiscusComment.getTopicId(), qiscusComment.getId(), path);
         }
     }
 
@@ -619,10 +778,11 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
         File file = Qiscus.getDataStore().getLocalPath(qiscusComment.getId());
         if (file == null) {
             qiscusComment.setDownloading(true);
+            //The download itself runs on the pool of the download manager, subscribing only queues it
             QiscusApi.getInstance()
                     .downloadFile(qiscusComment.getTopicId(), qiscusComment.getAttachmentUri().toString(),
                             qiscusComment.getAttachmentName(), percentage -> qiscusComment.setProgress((int) percentage))
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .doOnNext(file1 -> {
@@ -644,6 +804,10 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                         throwable.printStackTrace();
                         qiscusComment.setDownloading(false);
                         view.showError("Failed to download file!");
+                    }, () -> {
+                        if (qiscusComment.isDownloading()) { //Cancelled, e.g the item has been scrolled away
+                            qiscusComment.setDownloading(false);
+                        }
                     });
         } else {
             if (qiscusComment.getType() == QiscusComment.Type.AUDIO) {
@@ -669,7 +833,7 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
                 .doOnSubscribe(() -> Qiscus.getDataStore().add(qiscusComment))
                 .doOnNext(this::commentSuccess)
                 .doOnError(throwable -> commentFail(qiscusComment))
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.network())
                 .observeOn(AndroidSchedulers.mainThread())
                 .compose(bindToLifecycle())
                 .subscribe(commentSend -> {
@@ -687,9 +851,88 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
     @Override
     public void detachView() {
         super.detachView();
+        Choreographer.getInstance().removeFrameCallback(receivedCommentsCallback);
         QiscusPusherApi.getInstance().unListenRoom(room);
         room = null;
-        EventBus.getDefault().unregister(this);
+    }
+
+    /**
+     * Comments of the server compared with the comments which are shown
+     */
+    private static final class RoomUpdate {
+        private final QiscusChatRoom room;
+        private final List<QiscusComment> comments;
+        private final boolean continuous;
+
+        private RoomUpdate(QiscusChatRoom room, List<QiscusComment> shownComments, List<QiscusComment> fetchedComments) {
+            this.room = room;
+            continuous = isContinuous(shownComments, fetchedComments);
+            if (continuous) {
+                comments = getChangedComments(shownComments, fetchedComments);
+            } else {
+                //Comments which are not on the server yet are still shown
+                comments = new ArrayList<>(fetchedComments);
+                for (QiscusComment shownComment : shownComments) {
+                    if (shownComment.getId() == -1) {
+                        comments.add(shownComment);
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return Whether the oldest fetched comment follows a shown comment or is the first comment of the room
+         */
+        private static boolean isContinuous(List<QiscusComment> shownComments, List<QiscusComment> fetchedComments) {
+            if (shownComments.isEmpty() || fetchedComments.isEmpty()) {
+                return true;
+            }
+
+            Set<Integer> ids = new HashSet<>();
+            for (QiscusComment shownComment : shownComments) {
+                ids.add(shownComment.getId());
+            }
+            QiscusComment oldestComment = null;
+            for (QiscusComment fetchedComment : fetchedComments) {
+                if (ids.contains(fetchedComment.getId())) {
+                    return true;
+                }
+                if (fetchedComment.getId() != -1
+                        && (oldestComment == null || fetchedComment.getId() < oldestComment.getId())) {
+                    oldestComment = fetchedComment;
+                }
+            }
+            return oldestComment == null || oldestComment.getCommentBeforeId() == 0
+                    || ids.contains(oldestComment.getCommentBeforeId());
+        }
+
+        private static List<QiscusComment> getChangedComments(List<QiscusComment> shownComments,
+                                                              List<QiscusComment> fetchedComments) {
+            Map<String, QiscusComment> shownByUniqueId = new HashMap<>();
+            for (QiscusComment shownComment : shownComments) {
+                shownByUniqueId.put(shownComment.getUniqueId(), shownComment);
+            }
+
+            List<QiscusComment> changedComments = new ArrayList<>();
+            for (QiscusComment fetchedComment : fetchedComments) {
+                QiscusComment shownComment = shownByUniqueId.get(fetchedComment.getUniqueId());
+                if (shownComment == null) {
+                    changedComments.add(fetchedComment);
+                    continue;
+                }
+                //A receipt may have moved the shown comment further than the server page says
+                if (shownComment.getState() > fetchedComment.getState()) {
+                    fetchedComment.setState(shownComment.getState());
+                }
+                if (shownComment.getId() != fetchedComment.getId()
+                        || shownComment.getState() != fetchedComment.getState()
+                        || !TextUtils.equals(shownComment.getMessage(), fetchedComment.getMessage())
+                        || !TextUtils.equals(shownComment.getExtraPayload(), fetchedComment.getExtraPayload())) {
+                    changedComments.add(fetchedComment);
+                }
+            }
+            return changedComments;
+        }
     }
 
     public interface View extends QiscusPresenter.View {
@@ -698,10 +941,14 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
         void initRoomData(QiscusChatRoom qiscusChatRoom, List<QiscusComment> comments);
 
+        void replaceRoomData(QiscusChatRoom qiscusChatRoom, List<QiscusComment> comments);
+
         void showComments(List<QiscusComment> qiscusComments);
 
         void onLoadMore(List<QiscusComment> qiscusComments);
 
+        void onLoadNewer(List<QiscusComment> qiscusComments);
+
         void onSendingComment(QiscusComment qiscusComment);
 
         void onSuccessSendComment(QiscusComment qiscusComment);
@@ -710,6 +957,8 @@ public class QiscusChatPresenter extends QiscusPresenter<QiscusChatPresenter.Vie
 
         void onNewComment(QiscusComment qiscusComment);
 
+        void onNewComments(List<QiscusComment> qiscusComments);
+
         void onCommentDeleted(QiscusComment qiscusComment);
 
         void refreshComment(QiscusComment qiscusComment);
@@ -20,6 +20,7 @@ import android.support.v4.util.Pair;
 
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
 import java.io.File;
 import java.util.ArrayList;
@@ -27,7 +28,6 @@ import java.util.Collections;
 import java.util.List;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : March 23, 2017
@@ -58,7 +58,7 @@ public class QiscusPhotoViewerPresenter extends QiscusPresenter<QiscusPhotoViewe
                     Collections.reverse(qiscusPhotos);
                     return qiscusPhotos;
                 })
-                .subscribeOn(Schedulers.io())
+                .subscribeOn(QiscusSchedulers.db())
                 .observeOn(AndroidSchedulers.mainThread())
                 .subscribe(qiscusPhotos -> {
                     if (view != null) {
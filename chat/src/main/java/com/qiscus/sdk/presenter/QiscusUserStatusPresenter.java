@@ -16,14 +16,14 @@
 
 package com.qiscus.sdk.presenter;
 
-import com.qiscus.sdk.data.remote.QiscusPusherApi;
-import com.qiscus.sdk.event.QiscusUserStatusEvent;
-
-import org.greenrobot.eventbus.EventBus;
-import org.greenrobot.eventbus.Subscribe;
+import com.qiscus.sdk.data.remote.QiscusPresenceManager;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -40,30 +40,36 @@ public class QiscusUserStatusPresenter extends QiscusPresenter<QiscusUserStatusP
     public QiscusUserStatusPresenter(View view) {
         super(view);
         users = new HashSet<>();
-        if (!EventBus.getDefault().isRegistered(this)) {
-            EventBus.getDefault().register(this);
-        }
     }
 
     public void listenUser(String user) {
-        users.add(user);
-        QiscusPusherApi.getInstance().listenUserStatus(user);
+        listenUsers(Collections.singletonList(user));
     }
 
-    @Subscribe
-    public void onUserStatusChanged(QiscusUserStatusEvent event) {
-        if (users.contains(event.getUser())) {
-            view.onUserStatusChanged(event.getUser(), event.isOnline(), event.getLastActive());
-        }
-    }
-
-    @Override
-    public void detachView() {
-        super.detachView();
+    /**
+     * Listen status of many users with a single subscription, users which are already listened are skipped.
+     * They are unlistened when the view is detached.
+     *
+     * @param users Email of the users
+     */
+    public void listenUsers(Collection<String> users) {
+        List<String> newUsers = new ArrayList<>();
         for (String user : users) {
-            QiscusPusherApi.getInstance().unListenUserStatus(user);
+            if (this.users.add(user)) {
+                newUsers.add(user);
+            }
+        }
+        if (newUsers.isEmpty()) {
+            return;
         }
-        EventBus.getDefault().unregister(this);
+
+        QiscusPresenceManager.getInstance().observePresence(newUsers)
+                .compose(bindToLifecycle())
+                .subscribe(event -> {
+                    if (view != null) {
+                        view.onUserStatusChanged(event.getUser(), event.isOnline(), event.getLastActive());
+                    }
+                }, Throwable::printStackTrace);
     }
 
     public interface View extends QiscusPresenter.View {
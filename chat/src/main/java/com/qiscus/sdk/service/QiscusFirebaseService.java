@@ -20,12 +20,15 @@ import com.google.firebase.messaging.FirebaseMessagingService;
 import com.google.firebase.messaging.RemoteMessage;
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.data.remote.QiscusCommentCodec;
 import com.qiscus.sdk.data.remote.QiscusPusherApi;
 import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
 
 import org.greenrobot.eventbus.EventBus;
 
+import java.util.Map;
+
 public class QiscusFirebaseService extends FirebaseMessagingService {
 
     @Override
@@ -47,8 +50,8 @@ public class QiscusFirebaseService extends FirebaseMessagingService {
                 if (!QiscusPusherApi.getInstance().isConnected()) {
                     QiscusPusherApi.getInstance().restartConnection();
                 }
-                if (remoteMessage.getData().containsKey("payload")) {
-                    QiscusComment qiscusComment = QiscusPusherApi.jsonToComment(remoteMessage.getData().get("payload"));
+                QiscusComment qiscusComment = parseComment(remoteMessage.getData());
+                if (qiscusComment != null) {
                     if (!qiscusComment.getSenderEmail().equals(Qiscus.getQiscusAccount().getEmail())) {
                         QiscusPusherApi.getInstance()
                                 .setUserDelivery(qiscusComment.getRoomId(), qiscusComment.getTopicId(),
@@ -62,4 +65,13 @@ public class QiscusFirebaseService extends FirebaseMessagingService {
         }
         return false;
     }
-}
\ No newline at end of file
+
+    private static QiscusComment parseComment(Map<String, String> data) {
+        if (data.containsKey("compact_payload")) {
+            return QiscusCommentCodec.decodeBase64(data.get("compact_payload"));
+        } else if (data.containsKey("payload")) {
+            return QiscusPusherApi.jsonToComment(data.get("payload"));
+        }
+        return null;
+    }
+}
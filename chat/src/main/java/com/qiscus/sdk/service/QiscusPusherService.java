@@ -24,6 +24,7 @@ import android.graphics.BitmapFactory;
 import android.graphics.drawable.Drawable;
 import android.media.RingtoneManager;
 import android.os.IBinder;
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
 import android.support.v4.app.NotificationCompat;
 import android.support.v4.app.NotificationManagerCompat;
@@ -42,11 +43,13 @@ import com.qiscus.sdk.data.model.QiscusChatRoom;
 import com.qiscus.sdk.data.model.QiscusComment;
 import com.qiscus.sdk.data.model.QiscusPushNotificationMessage;
 import com.qiscus.sdk.data.remote.QiscusApi;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
 import com.qiscus.sdk.data.remote.QiscusPusherApi;
 import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
 import com.qiscus.sdk.event.QiscusUserEvent;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
 import com.qiscus.sdk.util.QiscusImageUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
 import org.greenrobot.eventbus.EventBus;
 import org.greenrobot.eventbus.Subscribe;
@@ -57,7 +60,6 @@ import java.util.Timer;
 import java.util.TimerTask;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : June 29, 2016
@@ -79,6 +81,7 @@ public class QiscusPusherService extends Service {
 
     private Timer timer;
     private QiscusAccount qiscusAccount;
+    private long lastSyncTime;
 
     @Override
     public void onCreate() {
@@ -114,8 +117,12 @@ public class QiscusPusherService extends Service {
         timer.scheduleAtFixedRate(new TimerTask() {
             @Override
             public void run() {
+                if (!shouldSync()) {
+                    return;
+                }
+                lastSyncTime = SystemClock.elapsedRealtime();
                 QiscusApi.getInstance().sync()
-                        .subscribeOn(Schedulers.io())
+                        .subscribeOn(QiscusSchedulers.network())
                         .observeOn(AndroidSchedulers.mainThread())
                         .subscribe(qiscusComment -> {
                             if (!qiscusComment.getSenderEmail().equals(qiscusAccount.getEmail())) {
@@ -136,6 +143,15 @@ public class QiscusPusherService extends Service {
         }, 0, period);
     }
 
+    private boolean shouldSync() {
+        QiscusConnectivityMonitor connectivityMonitor = QiscusConnectivityMonitor.getInstance();
+        if (!connectivityMonitor.isConnected()) {
+            return false;
+        }
+        return !connectivityMonitor.isSlow() || SystemClock.elapsedRealtime() - lastSyncTime
+                >= Qiscus.getChatConfig().getQiscusNetworkPolicyConfig().getSlowNetworkSyncPeriod();
+    }
+
     private void stopSync() {
         timer.cancel();
     }
@@ -42,6 +42,7 @@ import com.qiscus.sdk.ui.fragment.QiscusBaseChatFragment;
 import com.qiscus.sdk.ui.fragment.QiscusChatFragment;
 import com.trello.rxlifecycle.components.support.RxAppCompatActivity;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -129,11 +130,13 @@ public abstract class QiscusBaseChatActivity extends RxAppCompatActivity impleme
     }
 
     protected void binRoomData() {
+        List<String> users = new ArrayList<>();
         for (QiscusRoomMember member : qiscusChatRoom.getMember()) {
             if (!member.getEmail().equals(Qiscus.getQiscusAccount().getEmail())) {
-                userStatusPresenter.listenUser(member.getEmail());
+                users.add(member.getEmail());
             }
         }
+        userStatusPresenter.listenUsers(users);
     }
 
     protected abstract QiscusBaseChatFragment onCreateChatFragment();
@@ -25,12 +25,12 @@ import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.data.model.QiscusChatRoom;
 import com.qiscus.sdk.data.model.QiscusRoomMember;
+import com.qiscus.sdk.util.QiscusSchedulers;
 
 import java.util.Date;
 
 import rx.Observable;
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : November 24, 2016
@@ -92,7 +92,7 @@ public class QiscusGroupChatActivity extends QiscusChatActivity {
         if (typing) {
             Observable.from(qiscusChatRoom.getMember())
                     .filter(qiscusRoomMember -> qiscusRoomMember.getEmail().equals(user))
-                    .subscribeOn(Schedulers.newThread())
+                    .subscribeOn(QiscusSchedulers.computation())
                     .observeOn(AndroidSchedulers.mainThread())
                     .compose(bindToLifecycle())
                     .subscribe(qiscusRoomMember -> tvSubtitle.setText(String.format("%s is typing...",
@@ -17,11 +17,16 @@
 package com.qiscus.sdk.ui.adapter;
 
 import android.content.Context;
+import android.support.v4.view.AsyncLayoutInflater;
 import android.support.v7.util.SortedList;
 import android.support.v7.widget.RecyclerView;
+import android.text.TextUtils;
+import android.util.SparseArray;
+import android.util.SparseIntArray;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
+import android.widget.FrameLayout;
 
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.data.model.QiscusAccount;
@@ -29,10 +34,11 @@ import com.qiscus.sdk.data.model.QiscusComment;
 import com.qiscus.sdk.ui.adapter.viewholder.QiscusBaseMessageViewHolder;
 import com.qiscus.sdk.ui.view.QiscusChatButtonView;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
-import com.qiscus.sdk.util.QiscusDateUtil;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Created on : September 27, 2016
@@ -45,6 +51,16 @@ import java.util.List;
 
 public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends QiscusBaseMessageViewHolder<E>>
         extends RecyclerView.Adapter<H> {
+    /**
+     * Payload of a change which only touches the state indicator and time of a comment
+     */
+    public static final String PAYLOAD_STATE = "qiscus_payload_state";
+    /**
+     * Payload of a change which only touches the selection of a comment
+     */
+    public static final String PAYLOAD_SELECTION = "qiscus_payload_selection";
+    private static final int DEFAULT_POOL_SIZE = 5;
+
     protected Context context;
     protected SortedList<E> data;
     protected OnItemClickListener itemClickListener;
@@ -56,9 +72,14 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     protected int lastReadCommentId;
     protected boolean groupChat;
 
+    private final SparseArray<E> idIndex;
+    private final Map<String, E> uniqueIdIndex;
+
     public QiscusBaseChatAdapter(Context context, boolean groupChat) {
         this.context = context;
         this.groupChat = groupChat;
+        idIndex = new SparseArray<>();
+        uniqueIdIndex = new HashMap<>();
         data = new SortedList<>(getItemClass(), new SortedList.Callback<E>() {
             @Override
             public int compare(E lhs, E rhs) {
@@ -67,10 +88,19 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
             @Override
             public void onInserted(int position, int count) {
+                index(position, count);
+                notifyItemRangeInserted(position, count);
+                notifyNewerNeighbourChanged(position);
             }
 
             @Override
             public void onRemoved(int position, int count) {
+                //Removed items are not available anymore, their stale entries are dropped on lookup
+                if (data.size() == 0) {
+                    clearIndex();
+                }
+                notifyItemRangeRemoved(position, count);
+                notifyNewerNeighbourChanged(position);
             }
 
             @Override
@@ -81,11 +111,13 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
             @Override
             public void onChanged(int position, int count) {
+                index(position, count);
+                notifyItemRangeChanged(position, count);
             }
 
             @Override
             public boolean areContentsTheSame(E oldE, E newE) {
-                return oldE.equals(newE);
+                return QiscusBaseChatAdapter.this.areContentsTheSame(oldE, newE);
             }
 
             @Override
@@ -110,13 +142,15 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
     protected abstract Class<E> getItemClass();
 
+    /**
+     * The type, the sender and the day of loaded comments are computed by the presenter off the main thread,
+     * see {@link QiscusComment#prepareBindData()}, so here they are only read
+     */
     @Override
     public int getItemViewType(int position) {
         E qiscusComment = data.get(position);
-        if (qiscusComment.getSenderEmail().equals(qiscusAccount.getEmail())) {
-            return getItemViewTypeMyMessage(qiscusComment, position);
-        }
-        return getItemViewTypeOthersMessage(qiscusComment, position);
+        return qiscusComment.isMyComment() ? getItemViewTypeMyMessage(qiscusComment, position)
+                : getItemViewTypeOthersMessage(qiscusComment, position);
     }
 
     protected abstract int getItemViewTypeMyMessage(E qiscusComment, int position);
@@ -131,10 +165,94 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
                 QiscusAndroidUtil.compare(rhs.getId(), lhs.getId()) : rhs.getTime().compareTo(lhs.getTime());
     }
 
+    /**
+     * Whether an updated comment looks the same as the one it replaces, if not it is rebound
+     */
+    protected boolean areContentsTheSame(E oldE, E newE) {
+        return oldE.getId() == newE.getId()
+                && oldE.getState() == newE.getState()
+                && oldE.isSelected() == newE.isSelected()
+                && TextUtils.equals(oldE.getMessage(), newE.getMessage())
+                && TextUtils.equals(oldE.getExtraPayload(), newE.getExtraPayload())
+                && oldE.getTime().equals(newE.getTime());
+    }
+
+    /**
+     * The date and bubble indicator of a comment depend on the older comment right below it, so the newer
+     * comment above an inserted or removed one must be rebound
+     */
+    private void notifyNewerNeighbourChanged(int position) {
+        if (position > 0 && position - 1 < data.size()) {
+            notifyItemChanged(position - 1);
+        }
+    }
+
     protected View getView(ViewGroup parent, int viewType) {
+        if (parent instanceof PreInflatedParent) {
+            return ((PreInflatedParent) parent).itemView;
+        }
         return LayoutInflater.from(context).inflate(getItemResourceLayout(viewType), parent, false);
     }
 
+    /**
+     * How many view holders of each view type are inflated ahead, see {@link #preInflateViewHolders(RecyclerView)}
+     *
+     * @return Count of view holders by view type, empty to inflate nothing ahead
+     */
+    protected SparseIntArray getPreInflateCounts() {
+        return new SparseIntArray();
+    }
+
+    /**
+     * Inflate the layouts of the common view types on a background thread and put their view holders to the
+     * recycled view pool of the recycler view, so the first layout of the room does not inflate them on
+     * the main thread. The pool keeps at least as many view holders of each type as are inflated ahead.
+     * Call it once the adapter is set, while the comments are loading.
+     *
+     * @param recyclerView The recycler view of this adapter
+     */
+    public void preInflateViewHolders(RecyclerView recyclerView) {
+        SparseIntArray counts = getPreInflateCounts();
+        if (counts.size() == 0) {
+            return;
+        }
+
+        RecyclerView.RecycledViewPool pool = recyclerView.getRecycledViewPool();
+        List<Integer> viewTypes = new ArrayList<>();
+        for (int i = 0; i < counts.size(); i++) {
+            int viewType = counts.keyAt(i);
+            int count = counts.valueAt(i);
+            pool.setMaxRecycledViews(viewType, Math.max(count, DEFAULT_POOL_SIZE));
+            for (int j = 0; j < count; j++) {
+                viewTypes.add(viewType);
+            }
+        }
+        preInflateNext(new AsyncLayoutInflater(context), recyclerView, viewTypes, 0);
+    }
+
+    /**
+     * The request queue of the inflater is small and blocks the main thread once full, so only one layout is
+     * requested at a time and the next one is requested from the callback of the previous one.
+     * The holder is made by {@link #createViewHolder(ViewGroup, int)}, which tags it with its view type so
+     * the pool files it correctly, and {@link #getView(ViewGroup, int)} returns the inflated view to it.
+     */
+    private void preInflateNext(AsyncLayoutInflater inflater, RecyclerView recyclerView, List<Integer> viewTypes,
+                                int index) {
+        if (index >= viewTypes.size() || recyclerView.getAdapter() != this) {
+            return;
+        }
+
+        int viewType = viewTypes.get(index);
+        inflater.inflate(getItemResourceLayout(viewType), recyclerView, (view, resId, parent) -> {
+            if (recyclerView.getAdapter() != this) {
+                return;
+            }
+            H holder = createViewHolder(new PreInflatedParent(context, view), viewType);
+            recyclerView.getRecycledViewPool().putRecycledView(holder);
+            preInflateNext(inflater, recyclerView, viewTypes, index + 1);
+        });
+    }
+
     protected abstract int getItemResourceLayout(int viewType);
 
     @Override
@@ -144,17 +262,14 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
     public void onBindViewHolder(H h, int position) {
         h.setGroupChat(groupChat);
 
+        E qiscusComment = data.get(position);
         if (position == getItemCount() - 1) {
             h.setNeedToShowDate(true);
         } else {
-            h.setNeedToShowDate(!QiscusDateUtil.isDateEqualIgnoreTime(data.get(position).getTime(), data.get(position + 1).getTime()));
+            h.setNeedToShowDate(qiscusComment.getDayKey() != data.get(position + 1).getDayKey());
         }
 
-        if (!qiscusAccount.getEmail().equals(data.get(position).getSenderEmail())) {
-            h.setMessageFromMe(false);
-        } else {
-            h.setMessageFromMe(true);
-        }
+        h.setMessageFromMe(qiscusComment.isMyComment());
 
         if (h.isNeedToShowDate()) {
             h.setNeedToShowFirstMessageBubbleIndicator(true);
@@ -164,9 +279,45 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
             h.setNeedToShowFirstMessageBubbleIndicator(true);
         }
 
+        applyCommentState(data.get(position));
         h.bind(data.get(position));
     }
 
+    @Override
+    public void onBindViewHolder(H h, int position, List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(h, position);
+            return;
+        }
+
+        boolean bindState = false;
+        boolean bindSelection = false;
+        for (Object payload : payloads) {
+            if (PAYLOAD_STATE.equals(payload)) {
+                bindState = true;
+            } else if (PAYLOAD_SELECTION.equals(payload)) {
+                bindSelection = true;
+            } else {
+                onBindViewHolder(h, position);
+                return;
+            }
+        }
+
+        if (bindState) {
+            applyCommentState(data.get(position));
+            h.bindState(data.get(position));
+        }
+        if (bindSelection) {
+            h.bindSelection(data.get(position));
+        }
+    }
+
+    @Override
+    public void onViewRecycled(H holder) {
+        super.onViewRecycled(holder);
+        holder.onViewRecycled();
+    }
+
     @Override
     public int getItemCount() {
         try {
@@ -203,47 +354,54 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
     public int add(E e) {
         int i = data.add(e);
-        notifyItemInserted(i);
+        index(e);
         return i;
     }
 
     public void add(final List<E> es) {
         data.addAll(es);
-        notifyDataSetChanged();
+        for (E e : es) {
+            index(e);
+        }
     }
 
     public void addOrUpdate(E e) {
         int i = findPosition(e);
         if (i >= 0) {
             data.updateItemAt(i, e);
-            notifyItemChanged(i);
+            index(e);
         } else {
             add(e);
         }
     }
 
     public void addOrUpdate(final List<E> es) {
-        for (E e : es) {
-            int i = findPosition(e);
-            if (i >= 0) {
-                data.updateItemAt(i, e);
-            } else {
-                data.add(e);
+        //Notifications of the whole list are merged and dispatched once the batch ends
+        data.beginBatchedUpdates();
+        try {
+            for (E e : es) {
+                addOrUpdate(e);
             }
+        } finally {
+            data.endBatchedUpdates();
         }
-        notifyDataSetChanged();
     }
 
     public void refreshWithData(List<E> es) {
-        data.clear();
-        data.addAll(es);
-        notifyDataSetChanged();
+        data.beginBatchedUpdates();
+        try {
+            data.clear();
+            clearIndex();
+            add(es);
+        } finally {
+            data.endBatchedUpdates();
+        }
     }
 
     public void remove(int position) {
         if (position >= 0 && position < data.size()) {
+            unIndex(data.get(position));
             data.removeItemAt(position);
-            notifyItemRemoved(position);
         }
     }
 
@@ -254,13 +412,83 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
 
     public void clear() {
         data.clear();
+        clearIndex();
+    }
+
+    /**
+     * Remove the newest comments until at most maxCount comments are left, see {@link #evict(int, boolean)}
+     *
+     * @param maxCount Count of comments to keep
+     * @return Count of removed comments
+     */
+    public int evictNewest(int maxCount) {
+        return evict(maxCount, true);
+    }
+
+    /**
+     * Remove the oldest comments until at most maxCount comments are left, see {@link #evict(int, boolean)}
+     *
+     * @param maxCount Count of comments to keep
+     * @return Count of removed comments
+     */
+    public int evictOldest(int maxCount) {
+        return evict(maxCount, false);
+    }
+
+    /**
+     * Remove comments from one end of the list and release their resources, so a long room only keeps a window
+     * of comments in memory. Eviction stops at the first comment which can not be evicted, so the list never
+     * has a gap in the middle.
+     *
+     * @param maxCount Count of comments to keep
+     * @param newest   true to remove from the newest end, false to remove from the oldest end
+     * @return Count of removed comments
+     */
+    protected int evict(int maxCount, boolean newest) {
+        int evicted = 0;
+        data.beginBatchedUpdates();
+        try {
+            while (data.size() > maxCount) {
+                int position = newest ? 0 : data.size() - 1;
+                E e = data.get(position);
+                if (!isEvictable(e)) {
+                    break;
+                }
+                remove(position);
+                e.destroy();
+                evicted++;
+            }
+        } finally {
+            data.endBatchedUpdates();
+        }
+        return evicted;
+    }
+
+    /**
+     * Whether a comment can be removed from memory, comments which are sending, downloading, playing audio or
+     * selected are kept
+     */
+    protected boolean isEvictable(E e) {
+        return e.getState() > QiscusComment.STATE_SENDING && !e.isDownloading() && !e.isPlayingAudio()
+                && !e.isSelected();
     }
 
     public int findPosition(E e) {
-        if (data == null) {
+        if (data == null || e == null) {
             return -1;
         }
 
+        E indexed = getIndexedItem(e);
+        if (indexed == null) {
+            return -1;
+        }
+
+        int position = data.indexOf(indexed);
+        if (position != SortedList.INVALID_POSITION) {
+            return position;
+        }
+
+        //The sort key of the item was changed in place, so binary search can not find it
         int size = data.size();
         for (int i = 0; i < size; i++) {
             if (data.get(i).equals(e)) {
@@ -268,39 +496,124 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
             }
         }
 
+        //The indexed item is not in the list anymore
+        unIndex(indexed);
         return -1;
     }
 
+    /**
+     * Items are indexed by id and unique id, the same keys {@link QiscusComment#equals(Object)} uses
+     */
+    private E getIndexedItem(E e) {
+        E indexed = e.getId() != -1 ? idIndex.get(e.getId()) : null;
+        if (indexed == null && e.getUniqueId() != null) {
+            indexed = uniqueIdIndex.get(e.getUniqueId());
+        }
+        return indexed;
+    }
+
+    /**
+     * Index the items of a SortedList callback, the callback is delayed during batched updates so the items
+     * changed in a batch are also indexed directly by {@link #index(QiscusComment)}
+     */
+    private void index(int position, int count) {
+        for (int i = position; i < position + count && i < data.size(); i++) {
+            index(data.get(i));
+        }
+    }
+
+    private void index(E e) {
+        if (e.getId() != -1) {
+            idIndex.put(e.getId(), e);
+        }
+        if (e.getUniqueId() != null) {
+            uniqueIdIndex.put(e.getUniqueId(), e);
+        }
+    }
+
+    private void unIndex(E e) {
+        if (e.getId() != -1 && idIndex.get(e.getId()) == e) {
+            idIndex.remove(e.getId());
+        }
+        if (e.getUniqueId() != null && uniqueIdIndex.get(e.getUniqueId()) == e) {
+            uniqueIdIndex.remove(e.getUniqueId());
+        }
+    }
+
+    private void clearIndex() {
+        idIndex.clear();
+        uniqueIdIndex.clear();
+    }
+
+    /**
+     * Move the delivered watermark, every comment up to it is shown as delivered when it is bound.
+     * Only the comments between the old and the new watermark are rebound.
+     *
+     * @param lastDeliveredCommentId Id of the latest delivered comment
+     */
     public void updateLastDeliveredComment(int lastDeliveredCommentId) {
+        if (lastDeliveredCommentId <= this.lastDeliveredCommentId) {
+            return;
+        }
+        int oldWatermark = this.lastDeliveredCommentId;
         this.lastDeliveredCommentId = lastDeliveredCommentId;
-        updateCommentState();
-        notifyDataSetChanged();
+        notifyCommentStateChanged(oldWatermark, lastDeliveredCommentId);
+    }
+
+    /**
+     * Move the read watermark, a read comment is delivered too
+     *
+     * @param lastReadCommentId Id of the latest read comment
+     */
+    public void updateLastReadComment(int lastReadCommentId) {
+        if (lastReadCommentId <= this.lastReadCommentId) {
+            return;
+        }
+        int oldWatermark = this.lastReadCommentId;
+        this.lastReadCommentId = lastReadCommentId;
+        lastDeliveredCommentId = Math.max(lastDeliveredCommentId, lastReadCommentId);
+        notifyCommentStateChanged(oldWatermark, lastReadCommentId);
+    }
+
+    /**
+     * The state shown for a comment is derived from the watermarks when it is bound
+     */
+    protected void applyCommentState(E qiscusComment) {
+        if (qiscusComment.getState() <= QiscusComment.STATE_SENDING || qiscusComment.getId() == -1) {
+            return;
+        }
+        if (qiscusComment.getId() <= lastReadCommentId) {
+            qiscusComment.setState(QiscusComment.STATE_READ);
+        } else if (qiscusComment.getId() <= lastDeliveredCommentId
+                && qiscusComment.getState() < QiscusComment.STATE_DELIVERED) {
+            qiscusComment.setState(QiscusComment.STATE_DELIVERED);
+        }
     }
 
-    private void updateCommentState() {
+    /**
+     * Rebind the state of comments with oldWatermark &lt; id &lt;= newWatermark. They are next to each other
+     * since the list is sorted by id, newest first, so the walk stops at the old watermark.
+     */
+    private void notifyCommentStateChanged(int oldWatermark, int newWatermark) {
+        int first = -1;
+        int last = -1;
         int size = data.size();
         for (int i = 0; i < size; i++) {
-            if (data.get(i).getState() > QiscusComment.STATE_SENDING) {
-                if (data.get(i).getId() <= lastReadCommentId) {
-                    if (data.get(i).getState() == QiscusComment.STATE_READ) {
-                        break;
-                    }
-                    data.get(i).setState(QiscusComment.STATE_READ);
-                } else if (data.get(i).getId() <= lastDeliveredCommentId) {
-                    if (data.get(i).getState() == QiscusComment.STATE_DELIVERED) {
-                        break;
-                    }
-                    data.get(i).setState(QiscusComment.STATE_DELIVERED);
-                }
+            int id = data.get(i).getId();
+            if (id == -1 || id > newWatermark) {
+                continue;
+            }
+            if (id <= oldWatermark) {
+                break;
+            }
+            if (first < 0) {
+                first = i;
             }
+            last = i;
+        }
+        if (first >= 0) {
+            notifyItemRangeChanged(first, last - first + 1, PAYLOAD_STATE);
         }
-    }
-
-    public void updateLastReadComment(int lastReadCommentId) {
-        this.lastReadCommentId = lastReadCommentId;
-        this.lastDeliveredCommentId = lastReadCommentId;
-        updateCommentState();
-        notifyDataSetChanged();
     }
 
     public List<E> getSelectedComments() {
@@ -319,9 +632,9 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
         for (int i = size - 1; i >= 0; i--) {
             if (data.get(i).isSelected()) {
                 data.get(i).setSelected(false);
+                notifyItemChanged(i, PAYLOAD_SELECTION);
             }
         }
-        notifyDataSetChanged();
     }
 
     public void detachView() {
@@ -330,4 +643,17 @@ public abstract class QiscusBaseChatAdapter<E extends QiscusComment, H extends Q
             data.get(i).destroy();
         }
     }
+
+    /**
+     * Parent given to {@link #createViewHolder(ViewGroup, int)} for a view inflated ahead, it only carries
+     * the view to {@link #getView(ViewGroup, int)}
+     */
+    private static class PreInflatedParent extends FrameLayout {
+        private final View itemView;
+
+        private PreInflatedParent(Context context, View itemView) {
+            super(context);
+            this.itemView = itemView;
+        }
+    }
 }
@@ -17,6 +17,7 @@
 package com.qiscus.sdk.ui.adapter;
 
 import android.content.Context;
+import android.util.SparseIntArray;
 import android.view.ViewGroup;
 
 import com.qiscus.sdk.R;
@@ -71,8 +72,7 @@ public class QiscusChatAdapter extends QiscusBaseChatAdapter<QiscusComment, Qisc
     protected int getItemViewTypeMyMessage(QiscusComment qiscusComment, int position) {
         switch (qiscusComment.getType()) {
             case TEXT:
-                return qiscusComment.getMessage().contains(System.getProperty("line.separator"))
-                        ? TYPE_MESSAGE_MULTI_LINE_ME : TYPE_MESSAGE_ME;
+                return qiscusComment.isMultiLine() ? TYPE_MESSAGE_MULTI_LINE_ME : TYPE_MESSAGE_ME;
             case LINK:
                 return TYPE_LINK_ME;
             case IMAGE:
@@ -94,8 +94,7 @@ public class QiscusChatAdapter extends QiscusBaseChatAdapter<QiscusComment, Qisc
     protected int getItemViewTypeOthersMessage(QiscusComment qiscusComment, int position) {
         switch (qiscusComment.getType()) {
             case TEXT:
-                return qiscusComment.getMessage().contains(System.getProperty("line.separator"))
-                        ? TYPE_MESSAGE_MULTI_LINE_OTHER : TYPE_MESSAGE_OTHER;
+                return qiscusComment.isMultiLine() ? TYPE_MESSAGE_MULTI_LINE_OTHER : TYPE_MESSAGE_OTHER;
             case LINK:
                 return TYPE_LINK_OTHER;
             case IMAGE:
@@ -113,6 +112,25 @@ public class QiscusChatAdapter extends QiscusBaseChatAdapter<QiscusComment, Qisc
         }
     }
 
+    @Override
+    protected SparseIntArray getPreInflateCounts() {
+        //Enough bubbles of the common types to fill the first screen of a room
+        SparseIntArray counts = new SparseIntArray();
+        counts.put(TYPE_MESSAGE_ME, 6);
+        counts.put(TYPE_MESSAGE_OTHER, 6);
+        counts.put(TYPE_MESSAGE_MULTI_LINE_ME, 2);
+        counts.put(TYPE_MESSAGE_MULTI_LINE_OTHER, 2);
+        counts.put(TYPE_IMAGE_ME, 2);
+        counts.put(TYPE_IMAGE_OTHER, 2);
+        counts.put(TYPE_LINK_ME, 1);
+        counts.put(TYPE_LINK_OTHER, 1);
+        counts.put(TYPE_FILE_ME, 1);
+        counts.put(TYPE_FILE_OTHER, 1);
+        counts.put(TYPE_AUDIO_ME, 1);
+        counts.put(TYPE_AUDIO_OTHER, 1);
+        return counts;
+    }
+
     @Override
     protected int getItemResourceLayout(int viewType) {
         switch (viewType) {
@@ -49,8 +49,6 @@ public abstract class QiscusBaseAudioMessageViewHolder extends QiscusBaseMessage
     protected int playIcon;
     protected int pauseIcon;
 
-    private QiscusComment qiscusComment;
-
     public QiscusBaseAudioMessageViewHolder(View itemView, OnItemClickListener itemClickListener,
                                             OnLongItemClickListener longItemClickListener) {
         super(itemView, itemClickListener, longItemClickListener);
@@ -83,7 +81,6 @@ public abstract class QiscusBaseAudioMessageViewHolder extends QiscusBaseMessage
     @Override
     public void bind(QiscusComment qiscusComment) {
         super.bind(qiscusComment);
-        this.qiscusComment = qiscusComment;
         qiscusComment.setProgressListener(this);
         qiscusComment.setDownloadingListener(this);
         qiscusComment.setPlayingAudioListener(this);
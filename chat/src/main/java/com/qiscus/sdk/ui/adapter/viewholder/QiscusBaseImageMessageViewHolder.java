@@ -16,6 +16,7 @@
 
 package com.qiscus.sdk.ui.adapter.viewholder;
 
+import android.graphics.Point;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 import android.support.v4.content.ContextCompat;
@@ -23,6 +24,7 @@ import android.view.View;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 
+import com.bumptech.glide.DrawableRequestBuilder;
 import com.bumptech.glide.Glide;
 import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.resource.drawable.GlideDrawable;
@@ -31,6 +33,7 @@ import com.bumptech.glide.request.target.Target;
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
 import com.qiscus.sdk.ui.adapter.OnItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnLongItemClickListener;
 import com.qiscus.sdk.ui.view.QiscusProgressView;
@@ -166,7 +169,7 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
             thumbnailView.setVisibility(View.VISIBLE);
             Glide.with(thumbnailView.getContext())
                     .load(new File(qiscusComment.getAttachmentUri().toString()))
-                    .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                    .diskCacheStrategy(DiskCacheStrategy.RESULT)
                     .error(R.drawable.qiscus_image_placeholder)
                     .into(thumbnailView);
         } else {
@@ -196,7 +199,7 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
     protected void showImage(QiscusComment qiscusComment, File file) {
         Glide.with(thumbnailView.getContext())
                 .load(file)
-                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                .diskCacheStrategy(DiskCacheStrategy.RESULT)
                 .error(R.drawable.qiscus_image_placeholder)
                 .listener(new RequestListener<File, GlideDrawable>() {
                     @Override
@@ -218,17 +221,53 @@ public abstract class QiscusBaseImageMessageViewHolder extends QiscusBaseMessage
                 .into(thumbnailView);
     }
 
+    /**
+     * Show the preview of an image which is not downloaded yet, a tiny blurry image first then
+     * a thumbnail sized for the bubble. On slow network only the blurry image is loaded.
+     */
     protected void showBlurryImage(QiscusComment qiscusComment) {
         if (blurryImageView != null) {
+            String imageUrl = qiscusComment.getAttachmentUri().toString();
+            DrawableRequestBuilder<String> blurryRequest = Glide.with(blurryImageView.getContext())
+                    .load(QiscusImageUtil.generateTinyBlurryThumbnailUrl(imageUrl))
+                    .dontAnimate()
+                    .diskCacheStrategy(DiskCacheStrategy.SOURCE);
+
+            if (QiscusConnectivityMonitor.getInstance().isSlow()) {
+                blurryRequest.placeholder(R.drawable.qiscus_image_placeholder)
+                        .error(R.drawable.qiscus_image_placeholder)
+                        .into(blurryImageView);
+                return;
+            }
+
+            Point size = getThumbnailSize();
             Glide.with(blurryImageView.getContext())
-                    .load(QiscusImageUtil.generateBlurryThumbnailUrl(qiscusComment.getAttachmentUri().toString()))
+                    .load(QiscusImageUtil.generateThumbnailUrl(imageUrl, size.x, size.y))
+                    .thumbnail(blurryRequest)
                     .dontAnimate()
                     .diskCacheStrategy(DiskCacheStrategy.SOURCE)
                     .placeholder(R.drawable.qiscus_image_placeholder)
                     .error(R.drawable.qiscus_image_placeholder)
                     .into(blurryImageView);
         }
+    }
 
+    /**
+     * @return Size of the image bubble in pixels
+     */
+    protected Point getThumbnailSize() {
+        View sizeReference = imageHolderLayout != null ? imageHolderLayout : blurryImageView;
+        if (sizeReference != null) {
+            ViewGroup.LayoutParams layoutParams = sizeReference.getLayoutParams();
+            if (layoutParams != null && layoutParams.width > 0 && layoutParams.height > 0) {
+                return new Point(layoutParams.width, layoutParams.height);
+            }
+            if (sizeReference.getWidth() > 0 && sizeReference.getHeight() > 0) {
+                return new Point(sizeReference.getWidth(), sizeReference.getHeight());
+            }
+        }
+        int defaultSize = QiscusImageUtil.getDefaultThumbnailSize();
+        return new Point(defaultSize, defaultSize);
     }
 
     @Override
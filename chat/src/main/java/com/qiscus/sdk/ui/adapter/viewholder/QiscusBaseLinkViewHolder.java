@@ -47,8 +47,6 @@ import java.util.regex.Matcher;
 public abstract class QiscusBaseLinkViewHolder extends QiscusBaseTextMessageViewHolder implements QiscusComment.LinkPreviewListener {
     @NonNull protected QiscusLinkPreviewView linkPreviewView;
 
-    private QiscusComment qiscusComment;
-
     public QiscusBaseLinkViewHolder(View itemView, OnItemClickListener itemClickListener,
                                     OnLongItemClickListener longItemClickListener) {
         super(itemView, itemClickListener, longItemClickListener);
@@ -62,7 +60,6 @@ public abstract class QiscusBaseLinkViewHolder extends QiscusBaseTextMessageView
     @Override
     public void bind(QiscusComment qiscusComment) {
         super.bind(qiscusComment);
-        this.qiscusComment = qiscusComment;
         linkPreviewView.clearView();
         qiscusComment.setLinkPreviewListener(this);
         qiscusComment.loadLinkPreviewData();
@@ -31,6 +31,7 @@ import com.bumptech.glide.Glide;
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.data.remote.QiscusDownloadManager;
 import com.qiscus.sdk.ui.adapter.OnItemClickListener;
 import com.qiscus.sdk.ui.adapter.OnLongItemClickListener;
 
@@ -56,6 +57,8 @@ public abstract class QiscusBaseMessageViewHolder<E extends QiscusComment> exten
     private OnItemClickListener itemClickListener;
     private OnLongItemClickListener longItemClickListener;
 
+    protected E qiscusComment;
+
     protected boolean needToShowDate;
     protected boolean messageFromMe;
     protected boolean needToShowFirstMessageBubbleIndicator;
@@ -160,6 +163,7 @@ public abstract class QiscusBaseMessageViewHolder<E extends QiscusComment> exten
     }
 
     public void bind(E qiscusComment) {
+        this.qiscusComment = qiscusComment;
         setUpColor();
 
         showDateOrNot(qiscusComment);
@@ -178,6 +182,27 @@ public abstract class QiscusBaseMessageViewHolder<E extends QiscusComment> exten
         onCommentSelected(qiscusComment);
     }
 
+    /**
+     * Rebind only the state indicator and time, e.g. after a delivered or read receipt
+     *
+     * @param qiscusComment The comment
+     */
+    public void bindState(E qiscusComment) {
+        this.qiscusComment = qiscusComment;
+        showTime(qiscusComment);
+        showIconReadOrNot(qiscusComment);
+    }
+
+    /**
+     * Rebind only the selection background
+     *
+     * @param qiscusComment The comment
+     */
+    public void bindSelection(E qiscusComment) {
+        this.qiscusComment = qiscusComment;
+        onCommentSelected(qiscusComment);
+    }
+
     private void showSenderName(E qiscusComment) {
         if (senderNameView != null && !messageFromMe && groupChat) {
             if (needToShowFirstMessageBubbleIndicator) {
@@ -208,6 +233,19 @@ public abstract class QiscusBaseMessageViewHolder<E extends QiscusComment> exten
 
     protected abstract void showMessage(E qiscusComment);
 
+    /**
+     * Called when this view holder is recycled, stop prefetching the attachment because the item is not visible
+     * anymore. Downloads the user asked for keep running. The downloaded part is kept, so the download will be
+     * resumed at the next try.
+     */
+    public void onViewRecycled() {
+        if (qiscusComment != null && qiscusComment.getState() > QiscusComment.STATE_SENDING
+                && qiscusComment.isAttachment()) {
+            QiscusDownloadManager.getInstance().cancelIfLowPriority(qiscusComment.getAttachmentUri().toString());
+        }
+        qiscusComment = null;
+    }
+
     protected void setUpColor() {
         if (messageFromMe) {
             messageBubbleView.setBackground(rightBubbleDrawable);
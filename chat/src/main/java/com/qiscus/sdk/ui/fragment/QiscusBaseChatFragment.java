@@ -64,6 +64,7 @@ import com.qiscus.sdk.ui.adapter.QiscusBaseChatAdapter;
 import com.qiscus.sdk.ui.view.QiscusAudioRecorderView;
 import com.qiscus.sdk.ui.view.QiscusChatButtonView;
 import com.qiscus.sdk.ui.view.QiscusChatScrollListener;
+import com.qiscus.sdk.ui.view.QiscusPrefetchScrollListener;
 import com.qiscus.sdk.ui.view.QiscusRecyclerView;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
 import com.qiscus.sdk.util.QiscusFileUtil;
@@ -80,6 +81,7 @@ import org.json.JSONObject;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 
@@ -114,6 +116,8 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
     protected static final String EXTRA_STARTING_MESSAGE = "extra_starting_message";
     protected static final String EXTRA_SHARE_FILE = "extra_share_file";
     protected static final String COMMENTS_DATA = "saved_comments_data";
+    protected static final String NEWER_COMMENTS_EVICTED = "saved_newer_comments_evicted";
+    protected static final int COMMENTS_PER_PAGE = 20;
     protected static final int TAKE_PICTURE_REQUEST = 1;
 
     @NonNull protected ViewGroup rootView;
@@ -159,6 +163,8 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
     private CommentSelectedListener commentSelectedListener;
     private RoomChangedListener roomChangedListener;
     private EmojiPopup emojiPopup;
+    private boolean newerCommentsEvicted;
+    private boolean loadingNewerComments;
 
     @Nullable
     @Override
@@ -411,18 +417,21 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
         messageRecyclerView.setUpAsBottomList();
         chatLayoutManager = (LinearLayoutManager) messageRecyclerView.getLayoutManager();
         messageRecyclerView.setAdapter(chatAdapter);
+        chatAdapter.preInflateViewHolders(messageRecyclerView);
         messageRecyclerView.addOnScrollListener(new QiscusChatScrollListener(chatLayoutManager, this));
+        messageRecyclerView.addOnScrollListener(new QiscusPrefetchScrollListener(getActivity(), chatLayoutManager, chatAdapter));
 
         setupEmojiPopup();
 
         qiscusChatPresenter = new QiscusChatPresenter(this, qiscusChatRoom);
         if (savedInstanceState == null) {
-            qiscusChatPresenter.loadComments(20);
+            qiscusChatPresenter.loadComments(COMMENTS_PER_PAGE);
         } else {
             ArrayList<QiscusComment> comments = savedInstanceState.getParcelableArrayList(COMMENTS_DATA);
             if (comments == null) {
-                qiscusChatPresenter.loadComments(20);
+                qiscusChatPresenter.loadComments(COMMENTS_PER_PAGE);
             } else {
+                newerCommentsEvicted = savedInstanceState.getBoolean(NEWER_COMMENTS_EVICTED, false);
                 showComments(comments);
             }
         }
@@ -684,8 +693,8 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
                 fieldMessageEmpty = false;
                 sendButton.startAnimation(animation);
                 sendButton.setImageResource(chatConfig.getSendButtonIcon());
-                QiscusPusherApi.getInstance().setUserTyping(qiscusChatRoom.getId(), qiscusChatRoom.getLastTopicId(), true);
             }
+            QiscusPusherApi.getInstance().setUserTyping(qiscusChatRoom.getId(), qiscusChatRoom.getLastTopicId(), true);
         }
     }
 
@@ -797,6 +806,20 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
         showComments(comments);
     }
 
+    @Override
+    public void replaceRoomData(QiscusChatRoom qiscusChatRoom, List<QiscusComment> comments) {
+        this.qiscusChatRoom = qiscusChatRoom;
+        if (roomChangedListener != null) {
+            roomChangedListener.onRoomUpdated(qiscusChatRoom);
+        }
+        newerCommentsEvicted = false;
+        chatAdapter.detachView();
+        chatAdapter.refreshWithData(comments);
+        if (emptyChatHolder != null) {
+            emptyChatHolder.setVisibility(chatAdapter.isEmpty() ? View.VISIBLE : View.GONE);
+        }
+    }
+
     @Override
     public void showComments(List<QiscusComment> qiscusComments) {
         if (!qiscusComments.isEmpty()) {
@@ -816,6 +839,9 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
     @Override
     public void onLoadMore(List<QiscusComment> qiscusComments) {
         chatAdapter.addOrUpdate(qiscusComments);
+        if (chatAdapter.evictNewest(getCommentWindowSize()) > 0) {
+            newerCommentsEvicted = true;
+        }
         if (chatAdapter.isEmpty() && qiscusComments.isEmpty()) {
             if (emptyChatHolder != null) {
                 emptyChatHolder.setVisibility(View.VISIBLE);
@@ -827,8 +853,21 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
         }
     }
 
+    @Override
+    public void onLoadNewer(List<QiscusComment> qiscusComments) {
+        loadingNewerComments = false;
+        chatAdapter.addOrUpdate(qiscusComments);
+        if (qiscusComments.size() < COMMENTS_PER_PAGE) {
+            newerCommentsEvicted = false;
+        }
+        chatAdapter.evictOldest(getCommentWindowSize());
+    }
+
     @Override
     public void onSendingComment(QiscusComment qiscusComment) {
+        if (newerCommentsEvicted) {
+            reloadLatestComments();
+        }
         chatAdapter.addOrUpdate(qiscusComment);
         scrollToBottom();
         if (emptyChatHolder != null) {
@@ -838,18 +877,34 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     @Override
     public void onSuccessSendComment(QiscusComment qiscusComment) {
-        chatAdapter.addOrUpdate(qiscusComment);
+        updateComment(qiscusComment);
     }
 
     @Override
     public void onFailedSendComment(QiscusComment qiscusComment) {
-        chatAdapter.addOrUpdate(qiscusComment);
+        updateComment(qiscusComment);
     }
 
     @Override
     public void onNewComment(QiscusComment qiscusComment) {
-        chatAdapter.addOrUpdate(qiscusComment);
-        if (!qiscusComment.getSenderEmail().equalsIgnoreCase(qiscusAccount.getEmail()) && shouldShowNewMessageButton()) {
+        onNewComments(Collections.singletonList(qiscusComment));
+    }
+
+    @Override
+    public void onNewComments(List<QiscusComment> qiscusComments) {
+        boolean fromOthers = false;
+        for (QiscusComment qiscusComment : qiscusComments) {
+            if (!qiscusComment.getSenderEmail().equalsIgnoreCase(qiscusAccount.getEmail())) {
+                fromOthers = true;
+                break;
+            }
+        }
+
+        //While newer comments are evicted they are loaded from the local store together with them
+        if (!newerCommentsEvicted) {
+            chatAdapter.addOrUpdate(qiscusComments);
+        }
+        if (newerCommentsEvicted || (fromOthers && shouldShowNewMessageButton())) {
             if (newMessageButton != null && newMessageButton.getVisibility() == View.GONE) {
                 newMessageButton.setVisibility(View.VISIBLE);
                 newMessageButton.startAnimation(animation);
@@ -869,9 +924,45 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     @Override
     public void refreshComment(QiscusComment qiscusComment) {
+        updateComment(qiscusComment);
+    }
+
+    /**
+     * Update a shown comment, a comment which has been evicted is not added again because it would leave a gap
+     * between it and the shown comments
+     */
+    protected void updateComment(QiscusComment qiscusComment) {
+        if (newerCommentsEvicted && chatAdapter.findPosition(qiscusComment) < 0) {
+            return;
+        }
         chatAdapter.addOrUpdate(qiscusComment);
     }
 
+    /**
+     * @return Count of comments kept in memory, see {@link com.qiscus.sdk.data.model.QiscusChatConfig#setCommentWindowPages(int)}
+     */
+    protected int getCommentWindowSize() {
+        return Qiscus.getChatConfig().getCommentWindowPages() * COMMENTS_PER_PAGE;
+    }
+
+    private void loadNewerComments() {
+        if (!loadingNewerComments && newerCommentsEvicted && chatAdapter.getItemCount() > 0) {
+            loadingNewerComments = true;
+            QiscusComment qiscusComment = (QiscusComment) chatAdapter.getData().get(0);
+            qiscusChatPresenter.loadNewerCommentThan(qiscusComment, COMMENTS_PER_PAGE);
+        }
+    }
+
+    /**
+     * Drop the window of comments and show the latest comments again
+     */
+    protected void reloadLatestComments() {
+        newerCommentsEvicted = false;
+        chatAdapter.detachView();
+        chatAdapter.clear();
+        qiscusChatPresenter.loadComments(COMMENTS_PER_PAGE);
+    }
+
     @Override
     public void updateLastDeliveredComment(int lastDeliveredCommentId) {
         chatAdapter.updateLastDeliveredComment(lastDeliveredCommentId);
@@ -896,6 +987,9 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
     }
 
     protected void scrollToBottom() {
+        if (newerCommentsEvicted) {
+            reloadLatestComments();
+        }
         messageRecyclerView.smoothScrollToPosition(0);
         if (newMessageButton != null) {
             newMessageButton.setVisibility(View.GONE);
@@ -936,6 +1030,10 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     @Override
     public void onBottomOffListMessage() {
+        if (newerCommentsEvicted) {
+            loadNewerComments();
+            return;
+        }
         if (newMessageButton != null) {
             newMessageButton.setVisibility(View.GONE);
         }
@@ -967,6 +1065,7 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
 
     @Override
     public void dismissLoading() {
+        loadingNewerComments = false;
         try {
             swipeRefreshLayout.setRefreshing(false);
             loadMoreProgressBar.setVisibility(View.GONE);
@@ -981,7 +1080,7 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
             loadMoreComments();
             swipeRefreshLayout.setRefreshing(false);
         } else {
-            qiscusChatPresenter.loadComments(20);
+            qiscusChatPresenter.loadComments(COMMENTS_PER_PAGE);
         }
     }
 
@@ -1047,6 +1146,7 @@ public abstract class QiscusBaseChatFragment<T extends QiscusBaseChatAdapter> ex
             comments.add((QiscusComment) chatAdapter.getData().get(i));
         }
         outState.putParcelableArrayList(COMMENTS_DATA, comments);
+        outState.putBoolean(NEWER_COMMENTS_EVICTED, newerCommentsEvicted);
     }
 
     @Override
@@ -32,10 +32,10 @@ import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.R;
 import com.qiscus.sdk.data.remote.QiscusUrlScraper;
 import com.qiscus.sdk.util.QiscusAndroidUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
 import com.schinizer.rxunfurl.model.PreviewData;
 
 import rx.android.schedulers.AndroidSchedulers;
-import rx.schedulers.Schedulers;
 
 /**
  * Created on : December 09, 2016
@@ -133,7 +133,7 @@ public class QiscusLinkPreviewView extends LinearLayout {
         if (previewData == null || !previewData.getUrl().equals(url)) {
             QiscusUrlScraper.getInstance()
                     .generatePreviewData(url)
-                    .subscribeOn(Schedulers.io())
+                    .subscribeOn(QiscusSchedulers.network())
                     .observeOn(AndroidSchedulers.mainThread())
                     .subscribe(previewData -> {
                         this.previewData = previewData;
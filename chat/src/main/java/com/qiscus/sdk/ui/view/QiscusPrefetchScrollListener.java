@@ -0,0 +1,266 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.ui.view;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.SystemClock;
+import android.support.v7.util.SortedList;
+import android.support.v7.widget.LinearLayoutManager;
+import android.support.v7.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.data.model.QiscusComment;
+import com.qiscus.sdk.data.model.QiscusNetworkPolicyConfig;
+import com.qiscus.sdk.data.model.QiscusPrefetchConfig;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
+import com.qiscus.sdk.data.remote.QiscusDownloadManager;
+import com.qiscus.sdk.ui.adapter.QiscusBaseChatAdapter;
+import com.qiscus.sdk.util.QiscusFileUtil;
+import com.qiscus.sdk.util.QiscusImageUtil;
+import com.qiscus.sdk.util.QiscusSchedulers;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import rx.Observable;
+import rx.android.schedulers.AndroidSchedulers;
+
+/**
+ * Warm up the comments ahead of the scroll position, so image thumbnails, voice notes and link previews
+ * are ready by the time they become visible. The faster the list is scrolled the further ahead it looks,
+ * within the limits of {@link QiscusPrefetchConfig}.
+ */
+public class QiscusPrefetchScrollListener extends RecyclerView.OnScrollListener {
+    private static final int MAX_REMEMBERED_COMMENTS = 500;
+    private static final long BUDGET_WINDOW = 60000;
+    private static final long BATTERY_CHECK_INTERVAL = 60000;
+
+    private final Context context;
+    private final LinearLayoutManager linearLayoutManager;
+    private final QiscusBaseChatAdapter<? extends QiscusComment, ?> adapter;
+    private final Set<Integer> prefetchedComments;
+
+    private int lastFirstVisiblePosition = RecyclerView.NO_POSITION;
+    private long budgetWindowStart;
+    private int budgetUsed;
+    private long lastBatteryCheck;
+    private boolean lowBattery;
+
+    public QiscusPrefetchScrollListener(Context context, LinearLayoutManager linearLayoutManager,
+                                        QiscusBaseChatAdapter<? extends QiscusComment, ?> adapter) {
+        this.context = context.getApplicationContext();
+        this.linearLayoutManager = linearLayoutManager;
+        this.adapter = adapter;
+        prefetchedComments = new LinkedHashSet<>();
+    }
+
+    @Override
+    public void onScrolled(RecyclerView recyclerView, int dx, int dy) {
+        super.onScrolled(recyclerView, dx, dy);
+
+        QiscusPrefetchConfig config = Qiscus.getChatConfig().getQiscusPrefetchConfig();
+        if (!config.isEnable()) {
+            return;
+        }
+
+        int firstVisiblePosition = linearLayoutManager.findFirstVisibleItemPosition();
+        if (firstVisiblePosition == RecyclerView.NO_POSITION || firstVisiblePosition == lastFirstVisiblePosition) {
+            return;
+        }
+        //The list is reversed, a growing position means the user is scrolling up to older comments
+        boolean towardOlder = firstVisiblePosition > lastFirstVisiblePosition;
+        lastFirstVisiblePosition = firstVisiblePosition;
+
+        if (!config.isEnableOnLowBattery() && isLowBattery(config)) {
+            return;
+        }
+
+        if (!isAllowedByNetwork()) {
+            return;
+        }
+
+        int visibleCount = Math.max(1, linearLayoutManager.findLastVisibleItemPosition() - firstVisiblePosition + 1);
+        int itemHeight = Math.max(1, recyclerView.getHeight() / visibleCount);
+        int skippedItems = Math.abs(dy) / itemHeight;
+        int count = Math.min(config.getPrefetchCount() * (1 + skippedItems), config.getMaxPrefetchCount());
+
+        SortedList<? extends QiscusComment> data = adapter.getData();
+        int size = data.size();
+        if (towardOlder) {
+            int start = firstVisiblePosition + visibleCount;
+            for (int i = start; i < start + count && i < size; i++) {
+                if (!prefetch(data.get(i), config)) {
+                    return;
+                }
+            }
+        } else {
+            for (int i = firstVisiblePosition - 1; i >= 0 && i >= firstVisiblePosition - count; i--) {
+                if (!prefetch(data.get(i), config)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return false if the budget has run out and prefetching should stop
+     */
+    private boolean prefetch(QiscusComment qiscusComment, QiscusPrefetchConfig config) {
+        if (qiscusComment.getState() <= QiscusComment.STATE_SENDING || prefetchedComments.contains(qiscusComment.getId())) {
+            return true;
+        }
+
+        switch (qiscusComment.getType()) {
+            case IMAGE:
+            case AUDIO:
+                //The budget is only taken once we know the attachment is not stored locally
+                if (!hasBudget(config)) {
+                    return false;
+                }
+                prefetchAttachment(qiscusComment, config);
+                break;
+            case LINK:
+                if (!takeBudget(config)) {
+                    return false;
+                }
+                qiscusComment.loadLinkPreviewData();
+                break;
+            default:
+                break;
+        }
+
+        rememberPrefetched(qiscusComment.getId());
+        return true;
+    }
+
+    /**
+     * Look for the local file on the db scheduler, only attachments which are not stored yet are prefetched
+     */
+    private void prefetchAttachment(QiscusComment qiscusComment, QiscusPrefetchConfig config) {
+        String url = qiscusComment.getAttachmentUri().toString();
+        if (qiscusComment.isDownloading() || QiscusDownloadManager.getInstance().isDownloading(url)) {
+            return;
+        }
+
+        int commentId = qiscusComment.getId();
+        boolean image = qiscusComment.getType() == QiscusComment.Type.IMAGE;
+        Observable.fromCallable(() -> Qiscus.getDataStore().getLocalPath(commentId))
+                .filter(localPath -> localPath == null)
+                .subscribeOn(QiscusSchedulers.db())
+                .observeOn(AndroidSchedulers.mainThread())
+                .subscribe(localPath -> {
+                    if (!takeBudget(config)) {
+                        //Try again the next time it is scrolled by
+                        prefetchedComments.remove(commentId);
+                    } else if (image) {
+                        prefetchImage(url);
+                    } else {
+                        prefetchAudio(qiscusComment, url);
+                    }
+                }, Throwable::printStackTrace);
+    }
+
+    private void prefetchImage(String imageUrl) {
+        Glide.with(context)
+                .load(QiscusImageUtil.generateTinyBlurryThumbnailUrl(imageUrl))
+                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                .preload();
+        Glide.with(context)
+                .load(QiscusImageUtil.generateThumbnailUrl(imageUrl))
+                .diskCacheStrategy(DiskCacheStrategy.SOURCE)
+                .preload();
+    }
+
+    private void prefetchAudio(QiscusComment qiscusComment, String url) {
+        int commentId = qiscusComment.getId();
+        int topicId = qiscusComment.getTopicId();
+        String fileName = qiscusComment.getAttachmentName();
+        QiscusDownloadManager.getInstance()
+                .download(url, new File(QiscusFileUtil.generateFilePath(fileName, topicId)),
+                        QiscusDownloadManager.PRIORITY_LOW, null)
+                .doOnNext(file -> Qiscus.getDataStore().addOrUpdateLocalPath(topicId, commentId, file.getAbsolutePath()))
+                .subscribe(file -> {
+                }, Throwable::printStackTrace);
+    }
+
+    private boolean isAllowedByNetwork() {
+        QiscusNetworkPolicyConfig policy = Qiscus.getChatConfig().getQiscusNetworkPolicyConfig();
+        switch (QiscusConnectivityMonitor.getInstance().getNetworkType()) {
+            case NONE:
+                return false;
+            case SLOW:
+                return policy.isPrefetchOnSlowNetwork();
+            case METERED:
+                return policy.isPrefetchOnMetered();
+            default:
+                return true;
+        }
+    }
+
+    private boolean hasBudget(QiscusPrefetchConfig config) {
+        long now = SystemClock.elapsedRealtime();
+        if (now - budgetWindowStart >= BUDGET_WINDOW) {
+            budgetWindowStart = now;
+            budgetUsed = 0;
+        }
+        return budgetUsed < config.getMaxPrefetchPerMinute();
+    }
+
+    private boolean takeBudget(QiscusPrefetchConfig config) {
+        if (!hasBudget(config)) {
+            return false;
+        }
+        budgetUsed++;
+        return true;
+    }
+
+    private void rememberPrefetched(int commentId) {
+        prefetchedComments.add(commentId);
+        if (prefetchedComments.size() > MAX_REMEMBERED_COMMENTS) {
+            Iterator<Integer> iterator = prefetchedComments.iterator();
+            iterator.next();
+            iterator.remove();
+        }
+    }
+
+    private boolean isLowBattery(QiscusPrefetchConfig config) {
+        long now = SystemClock.elapsedRealtime();
+        if (lastBatteryCheck != 0 && now - lastBatteryCheck < BATTERY_CHECK_INTERVAL) {
+            return lowBattery;
+        }
+        lastBatteryCheck = now;
+
+        Intent batteryStatus = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (batteryStatus == null) {
+            lowBattery = false;
+            return false;
+        }
+        int status = batteryStatus.getIntExtra(BatteryManager.EXTRA_STATUS, -1);
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+        int level = batteryStatus.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = batteryStatus.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        lowBattery = !charging && level >= 0 && scale > 0 && level * 100 / scale < config.getLowBatteryLevel();
+        return lowBattery;
+    }
+}
@@ -22,6 +22,7 @@ import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
 
 public final class QiscusDateUtil {
 
@@ -48,7 +49,19 @@ public final class QiscusDateUtil {
     }
 
     public static boolean isDateEqualIgnoreTime(Date lhs, Date rhs) {
-        return toTodayOrDate(lhs).equals(toTodayOrDate(rhs));
+        return getDayKey(lhs) == getDayKey(rhs);
+    }
+
+    /**
+     * Number of the day of a date in the default time zone, two dates are at the same day if their keys are equal.
+     * Cheaper than comparing formatted dates, nothing is formatted.
+     *
+     * @param date The date
+     * @return Days since epoch in the default time zone
+     */
+    public static long getDayKey(Date date) {
+        long millis = date.getTime();
+        return (millis + TimeZone.getDefault().getOffset(millis)) / DateUtils.DAY_IN_MILLIS;
     }
 
     public static String getRelativeTimeDiff(Date date) {
@@ -0,0 +1,147 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.util;
+
+import android.os.Build;
+
+/**
+ * Build url of a server side transformed image (resized, blurred, re-encoded) from the url of an uploaded image.
+ * Requested sizes are rounded up to a few buckets so the same image shown in slightly different views still
+ * hits the same cache entry. Urls that are not served by the image transformation server are returned as is.
+ */
+public final class QiscusImageUrlBuilder {
+    private static final String UPLOAD_SEGMENT = "upload/";
+    private static final int SIZE_BUCKET = 64;
+    private static final int MAX_SIZE = 2048;
+
+    private final String imageUrl;
+    private int width;
+    private int height;
+    private boolean crop;
+    private int blur;
+    private boolean autoQuality;
+    private boolean webp;
+
+    private QiscusImageUrlBuilder(String imageUrl) {
+        this.imageUrl = imageUrl;
+    }
+
+    public static QiscusImageUrlBuilder with(String imageUrl) {
+        return new QiscusImageUrlBuilder(imageUrl);
+    }
+
+    /**
+     * Fit the image inside the given size in pixels, keeping the aspect ratio
+     */
+    public QiscusImageUrlBuilder fit(int width, int height) {
+        this.width = bucket(width);
+        this.height = bucket(height);
+        crop = false;
+        return this;
+    }
+
+    /**
+     * Fill the given size in pixels, cropping what is outside, like ImageView.ScaleType.CENTER_CROP
+     */
+    public QiscusImageUrlBuilder fill(int width, int height) {
+        this.width = bucket(width);
+        this.height = bucket(height);
+        crop = true;
+        return this;
+    }
+
+    /**
+     * Exact size in pixels, without bucketing
+     */
+    public QiscusImageUrlBuilder exactFit(int width, int height) {
+        this.width = width;
+        this.height = height;
+        crop = false;
+        return this;
+    }
+
+    public QiscusImageUrlBuilder blur(int blur) {
+        this.blur = blur;
+        return this;
+    }
+
+    /**
+     * Let the server pick the lowest quality which is visually close to the original
+     */
+    public QiscusImageUrlBuilder autoQuality() {
+        autoQuality = true;
+        return this;
+    }
+
+    /**
+     * Ask for WebP when the device can decode every WebP variant, JPEG otherwise
+     */
+    public QiscusImageUrlBuilder webp() {
+        webp = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+        return this;
+    }
+
+    public String build() {
+        if (imageUrl == null) {
+            return null;
+        }
+
+        int i = imageUrl.indexOf(UPLOAD_SEGMENT);
+        if (i <= 0) {
+            return imageUrl;
+        }
+        i += UPLOAD_SEGMENT.length();
+
+        StringBuilder transformation = new StringBuilder();
+        if (width > 0 && height > 0) {
+            transformation.append("w_").append(width).append(",h_").append(height)
+                    .append(crop ? ",c_fill" : ",c_limit");
+        }
+        if (autoQuality) {
+            appendSeparator(transformation).append("q_auto");
+        }
+        if (blur > 0) {
+            appendSeparator(transformation).append("e_blur:").append(blur);
+        }
+
+        String file = imageUrl.substring(i);
+        int extension = file.lastIndexOf('.');
+        if (extension > 0) {
+            file = file.substring(0, extension);
+        }
+
+        StringBuilder url = new StringBuilder(imageUrl.substring(0, i));
+        if (transformation.length() > 0) {
+            url.append(transformation).append('/');
+        }
+        return url.append(file).append(webp ? ".webp" : ".jpg").toString();
+    }
+
+    private static StringBuilder appendSeparator(StringBuilder transformation) {
+        if (transformation.length() > 0) {
+            transformation.append(',');
+        }
+        return transformation;
+    }
+
+    private static int bucket(int size) {
+        if (size <= 0) {
+            return size;
+        }
+        return Math.min(MAX_SIZE, (size + SIZE_BUCKET - 1) / SIZE_BUCKET * SIZE_BUCKET);
+    }
+}
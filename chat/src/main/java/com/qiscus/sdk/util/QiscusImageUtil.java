@@ -35,6 +35,7 @@ import android.webkit.MimeTypeMap;
 
 import com.qiscus.sdk.Qiscus;
 import com.qiscus.sdk.data.local.QiscusCacheManager;
+import com.qiscus.sdk.data.remote.QiscusConnectivityMonitor;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -48,6 +49,7 @@ public final class QiscusImageUtil {
 
     public static final String IMAGE_PATH = Qiscus.getAppsName() + File.separator +
             Qiscus.getAppsName() + " Images";
+    private static final int DEFAULT_THUMBNAIL_SIZE_DP = 192;
 
     private QiscusImageUtil() {
 
@@ -168,8 +170,11 @@ public final class QiscusImageUtil {
             out = new FileOutputStream(filename);
 
             //write the compressed bitmap at the destination specified by filename.
-            QiscusImageUtil.getScaledBitmap(imageUri).compress(Bitmap.CompressFormat.JPEG,
-                    Qiscus.getChatConfig().getQiscusImageCompressionConfig().getQuality(), out);
+            int quality = Qiscus.getChatConfig().getQiscusImageCompressionConfig().getQuality();
+            if (QiscusConnectivityMonitor.getInstance().isSlow()) {
+                quality = Math.min(quality, Qiscus.getChatConfig().getQiscusNetworkPolicyConfig().getSlowNetworkImageQuality());
+            }
+            QiscusImageUtil.getScaledBitmap(imageUri).compress(Bitmap.CompressFormat.JPEG, quality, out);
 
         } catch (FileNotFoundException e) {
             e.printStackTrace();
@@ -287,22 +292,39 @@ public final class QiscusImageUtil {
     }
 
     public static String generateBlurryThumbnailUrl(String imageUrl, int width, int height, int blur) {
-        if (imageUrl == null) {
-            return null;
-        }
+        return QiscusImageUrlBuilder.with(imageUrl)
+                .exactFit(width, height)
+                .blur(blur)
+                .build();
+    }
 
-        int i = imageUrl.indexOf("upload/");
-        if (i > 0) {
-            i += 7;
-            String blurryImageUrl = imageUrl.substring(0, i);
-            blurryImageUrl += "w_" + width + ",h_" + height + ",c_limit,e_blur:" + blur + "/";
-            String file = imageUrl.substring(i);
-            i = file.lastIndexOf('.');
-            if (i > 0) {
-                file = file.substring(0, i);
-            }
-            return blurryImageUrl + file + ".jpg";
-        }
-        return imageUrl;
+    /**
+     * Very small blurred version of the image, good enough as a placeholder while the thumbnail is loading
+     */
+    public static String generateTinyBlurryThumbnailUrl(String imageUrl) {
+        return generateBlurryThumbnailUrl(imageUrl, 48, 48, 100);
+    }
+
+    /**
+     * Thumbnail of the image which fills the given size in pixels
+     */
+    public static String generateThumbnailUrl(String imageUrl, int width, int height) {
+        return QiscusImageUrlBuilder.with(imageUrl)
+                .fill(width, height)
+                .autoQuality()
+                .webp()
+                .build();
+    }
+
+    /**
+     * Thumbnail of the image sized for the default image bubble of the chat room
+     */
+    public static String generateThumbnailUrl(String imageUrl) {
+        int size = getDefaultThumbnailSize();
+        return generateThumbnailUrl(imageUrl, size, size);
+    }
+
+    public static int getDefaultThumbnailSize() {
+        return (int) QiscusAndroidUtil.dp2px(Qiscus.getApps().getResources(), DEFAULT_THUMBNAIL_SIZE_DP);
     }
 }
@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.util;
+
+/**
+ * Snapshot of the counters of one pool of {@link QiscusSchedulers}. Counters start from zero every time the
+ * app starts.
+ */
+public final class QiscusSchedulerStats {
+    private final String name;
+    private final int maxThreads;
+    private final int threadCount;
+    private final int activeCount;
+    private final int queueSize;
+    private final long executedCount;
+    private final long averageWaitTime;
+    private final long maxWaitTime;
+    private final long averageRunTime;
+
+    QiscusSchedulerStats(String name, int maxThreads, int threadCount, int activeCount, int queueSize,
+                         long executedCount, long averageWaitTime, long maxWaitTime, long averageRunTime) {
+        this.name = name;
+        this.maxThreads = maxThreads;
+        this.threadCount = threadCount;
+        this.activeCount = activeCount;
+        this.queueSize = queueSize;
+        this.executedCount = executedCount;
+        this.averageWaitTime = averageWaitTime;
+        this.maxWaitTime = maxWaitTime;
+        this.averageRunTime = averageRunTime;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getMaxThreads() {
+        return maxThreads;
+    }
+
+    /**
+     * @return Threads which are alive, idle threads included
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * @return Threads which are running a task
+     */
+    public int getActiveCount() {
+        return activeCount;
+    }
+
+    /**
+     * @return Tasks waiting for a free thread
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    public long getExecutedCount() {
+        return executedCount;
+    }
+
+    /**
+     * @return Average time in millis a task waited in the queue before it ran
+     */
+    public long getAverageWaitTime() {
+        return averageWaitTime;
+    }
+
+    public long getMaxWaitTime() {
+        return maxWaitTime;
+    }
+
+    /**
+     * @return Average time in millis a task ran
+     */
+    public long getAverageRunTime() {
+        return averageRunTime;
+    }
+
+    @Override
+    public String toString() {
+        return "QiscusSchedulerStats{" +
+                "name='" + name + '\'' +
+                ", maxThreads=" + maxThreads +
+                ", threadCount=" + threadCount +
+                ", activeCount=" + activeCount +
+                ", queueSize=" + queueSize +
+                ", executedCount=" + executedCount +
+                ", averageWaitTime=" + averageWaitTime +
+                ", maxWaitTime=" + maxWaitTime +
+                ", averageRunTime=" + averageRunTime +
+                '}';
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.util;
+
+import android.os.Process;
+import android.os.SystemClock;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import rx.Scheduler;
+import rx.schedulers.Schedulers;
+
+/**
+ * Schedulers of the background work of the SDK. Each of them runs on its own pool with a fixed maximum of
+ * threads, so the SDK never creates a thread per task and the app can cap how many threads the SDK uses.
+ * Idle threads are stopped after 30 seconds. Tasks wait in the queue of their pool when every thread is busy.
+ * <ul>
+ * <li>{@link #db()} for the local data store and files</li>
+ * <li>{@link #network()} for short requests to the server</li>
+ * <li>{@link #transfer()} for file uploads, so slow transfers never hold the threads of short requests</li>
+ * <li>{@link #computation()} for work which only uses the CPU</li>
+ * </ul>
+ */
+public final class QiscusSchedulers {
+    private static final Pool DB = new Pool("qiscus_db", 2);
+    private static final Pool NETWORK = new Pool("qiscus_network", 4);
+    private static final Pool TRANSFER = new Pool("qiscus_transfer", 2);
+    private static final Pool COMPUTATION = new Pool("qiscus_computation",
+            Math.max(2, Runtime.getRuntime().availableProcessors() - 1));
+
+    private static final Scheduler DB_SCHEDULER = Schedulers.from(DB);
+    private static final Scheduler NETWORK_SCHEDULER = Schedulers.from(NETWORK);
+    private static final Scheduler TRANSFER_SCHEDULER = Schedulers.from(TRANSFER);
+    private static final Scheduler COMPUTATION_SCHEDULER = Schedulers.from(COMPUTATION);
+
+    private QiscusSchedulers() {
+    }
+
+    public static Scheduler db() {
+        return DB_SCHEDULER;
+    }
+
+    public static Scheduler network() {
+        return NETWORK_SCHEDULER;
+    }
+
+    /**
+     * Downloads do not use it, they run on the pool of {@link com.qiscus.sdk.data.remote.QiscusDownloadManager}
+     */
+    public static Scheduler transfer() {
+        return TRANSFER_SCHEDULER;
+    }
+
+    public static Scheduler computation() {
+        return COMPUTATION_SCHEDULER;
+    }
+
+    /**
+     * Run a task on the db pool, errors of the task are only logged
+     *
+     * @param runnable The task
+     */
+    public static void runOnDb(Runnable runnable) {
+        DB.execute(() -> {
+            try {
+                runnable.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * Change the maximum of threads of each pool, it can be called at any time
+     *
+     * @param dbThreads          Threads of {@link #db()}, default 2
+     * @param networkThreads     Threads of {@link #network()}, default 4
+     * @param transferThreads    Threads of {@link #transfer()}, default 2
+     * @param computationThreads Threads of {@link #computation()}, default the count of processors minus one
+     */
+    public static void setMaxThreads(int dbThreads, int networkThreads, int transferThreads, int computationThreads) {
+        DB.setMaxThreads(dbThreads);
+        NETWORK.setMaxThreads(networkThreads);
+        TRANSFER.setMaxThreads(transferThreads);
+        COMPUTATION.setMaxThreads(computationThreads);
+    }
+
+    public static QiscusSchedulerStats getDbStats() {
+        return DB.getStats();
+    }
+
+    public static QiscusSchedulerStats getNetworkStats() {
+        return NETWORK.getStats();
+    }
+
+    public static QiscusSchedulerStats getTransferStats() {
+        return TRANSFER.getStats();
+    }
+
+    public static QiscusSchedulerStats getComputationStats() {
+        return COMPUTATION.getStats();
+    }
+
+    private static final class Pool extends ThreadPoolExecutor {
+        private final String name;
+
+        private long executedCount;
+        private long totalWaitTime;
+        private long maxWaitTime;
+        private long totalRunTime;
+
+        private Pool(String name, int maxThreads) {
+            super(maxThreads, maxThreads, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new NamedThreadFactory(name));
+            this.name = name;
+            allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            long queuedTime = SystemClock.elapsedRealtime();
+            super.execute(() -> {
+                long startTime = SystemClock.elapsedRealtime();
+                try {
+                    command.run();
+                } finally {
+                    onExecuted(startTime - queuedTime, SystemClock.elapsedRealtime() - startTime);
+                }
+            });
+        }
+
+        private synchronized void onExecuted(long waitTime, long runTime) {
+            executedCount++;
+            totalWaitTime += waitTime;
+            maxWaitTime = Math.max(maxWaitTime, waitTime);
+            totalRunTime += runTime;
+        }
+
+        private synchronized void setMaxThreads(int maxThreads) {
+            maxThreads = Math.max(1, maxThreads);
+            //Core size can never be bigger than the maximum size
+            if (maxThreads > getMaximumPoolSize()) {
+                setMaximumPoolSize(maxThreads);
+                setCorePoolSize(maxThreads);
+            } else {
+                setCorePoolSize(maxThreads);
+                setMaximumPoolSize(maxThreads);
+            }
+        }
+
+        private synchronized QiscusSchedulerStats getStats() {
+            return new QiscusSchedulerStats(name, getMaximumPoolSize(), getPoolSize(), getActiveCount(),
+                    getQueue().size(), executedCount, executedCount == 0 ? 0 : totalWaitTime / executedCount,
+                    maxWaitTime, executedCount == 0 ? 0 : totalRunTime / executedCount);
+        }
+    }
+
+    private static final class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private final AtomicInteger threadCount;
+
+        private NamedThreadFactory(String name) {
+            this.name = name;
+            threadCount = new AtomicInteger();
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, name + "_" + threadCount.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import org.apache.activemq.broker.BrokerService;
+import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
+import org.junit.rules.ExternalResource;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+
+/**
+ * Embedded MQTT broker on a free local port, started before and stopped after every test. Point the SDK to it with
+ * {@link com.qiscus.sdk.Qiscus#initWithCustomServer(android.app.Application, String, String)} and {@link #getUrl()},
+ * then play the server side with {@link #publish(String, byte[], int, boolean)}.
+ */
+public class QiscusMqttBroker extends ExternalResource {
+    private BrokerService brokerService;
+    private MqttClient publisher;
+    private int port;
+
+    @Override
+    protected void before() throws Throwable {
+        port = findFreePort();
+
+        brokerService = new BrokerService();
+        brokerService.setPersistent(false);
+        brokerService.setUseJmx(false);
+        brokerService.setAdvisorySupport(false);
+        brokerService.addConnector("mqtt://127.0.0.1:" + port);
+        brokerService.start();
+        brokerService.waitUntilStarted();
+
+        publisher = new MqttClient(getUrl(), "qiscus_test_publisher", new MemoryPersistence());
+        MqttConnectOptions options = new MqttConnectOptions();
+        options.setCleanSession(true);
+        options.setMaxInflight(1000);
+        publisher.connect(options);
+    }
+
+    @Override
+    protected void after() {
+        try {
+            publisher.disconnect();
+            publisher.close();
+        } catch (MqttException e) {
+            e.printStackTrace();
+        }
+        try {
+            brokerService.stop();
+            brokerService.waitUntilStopped();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    public String getUrl() {
+        return "tcp://127.0.0.1:" + port;
+    }
+
+    /**
+     * Publish as the server does, returns once the broker has the message for QoS 1 and 2
+     */
+    public void publish(String topic, byte[] payload, int qos, boolean retained) throws MqttException {
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        message.setRetained(retained);
+        publisher.publish(topic, message);
+    }
+
+    private static int findFreePort() throws IOException {
+        ServerSocket socket = new ServerSocket(0);
+        try {
+            return socket.getLocalPort();
+        } finally {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,355 @@
+/*
+ * Copyright (c) 2016 Qiscus.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.qiscus.sdk.data.remote;
+
+import android.app.Application;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.qiscus.sdk.BuildConfig;
+import com.qiscus.sdk.Qiscus;
+import com.qiscus.sdk.data.model.QiscusAccount;
+import com.qiscus.sdk.data.model.QiscusChatRoom;
+import com.qiscus.sdk.event.QiscusChatRoomEvent;
+import com.qiscus.sdk.event.QiscusCommentReceivedEvent;
+
+import org.eclipse.paho.android.service.MqttService;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import rx.Subscription;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Connect {@link QiscusPusherApi} to an embedded broker, replay thousands of comments, typing and receipts through
+ * the MQTT service into {@link QiscusPusherApi#messageArrived(String, org.eclipse.paho.client.mqttv3.MqttMessage)},
+ * and check the dispatch stats, see {@link QiscusPusherApi#getRealtimeDispatchStats()}: nothing is lost without being
+ * counted, latency and the allocations of the dispatcher thread stay bounded. The numbers of every burst are logged.
+ * Latencies are in the clock of Robolectric, which advances one frame per idle of the main looper.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(constants = BuildConfig.class, sdk = 23)
+public class QiscusPusherApiTest {
+    private static final Logger LOGGER = Logger.getLogger(QiscusPusherApiTest.class.getSimpleName());
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+    private static final long FRAME_MILLIS = 16;
+    private static final long TIMEOUT = 60000;
+    private static final long MAX_LATENCY = 5000;
+    private static final int ROOM_ID = 1;
+    private static final int TOPIC_ID = 1;
+    private static final int USER_COUNT = 5;
+    private static final int COMMENT_COUNT = 2000;
+    private static final int BURST_COUNT = 5;
+    //Below the 512 messages the dispatcher queues before it drops typing and receipts
+    private static final int BURST_SIZE = 400;
+    private static final long MAX_COMMENT_ALLOCATION = 64 * 1024;
+    private static final long MAX_EVENT_ALLOCATION = 8 * 1024;
+
+    @Rule
+    public final QiscusMqttBroker broker = new QiscusMqttBroker();
+
+    private QiscusAccount qiscusAccount;
+    private Subscription roomSubscription;
+    private final List<Integer> receivedCommentIds = new ArrayList<>();
+    private final Map<String, Boolean> typingStates = new HashMap<>();
+    private int receiptCount;
+
+    @Before
+    public void setUp() throws Exception {
+        Application application = RuntimeEnvironment.application;
+
+        qiscusAccount = new QiscusAccount();
+        qiscusAccount.setId(1);
+        qiscusAccount.setEmail("me@qiscus.com");
+        qiscusAccount.setUsername("Me");
+        qiscusAccount.setToken("test_token");
+        application.getSharedPreferences("qiscus.cfg", Context.MODE_PRIVATE).edit()
+                .putString("cached_account", new Gson().toJson(qiscusAccount))
+                .commit();
+
+        //Robolectric does not start services on bind, hand the MQTT service to the client ourselves
+        MqttService mqttService = Robolectric.setupService(MqttService.class);
+        shadowOf(application).setComponentNameAndServiceForBindService(
+                new ComponentName(application, MqttService.class),
+                mqttService.onBind(new Intent(application, MqttService.class)));
+
+        //Every test has its own broker, the pusher follows the url on its next connect
+        Qiscus.initWithCustomServer(application, "http://127.0.0.1", broker.getUrl());
+        roomSubscription = QiscusRoomEventRegistry.getInstance().observeRoom(ROOM_ID)
+                .subscribe(event -> {
+                    if (event instanceof QiscusCommentReceivedEvent) {
+                        receivedCommentIds.add(((QiscusCommentReceivedEvent) event).getQiscusComment().getId());
+                    } else if (event instanceof QiscusChatRoomEvent) {
+                        onChatRoomEvent((QiscusChatRoomEvent) event);
+                    }
+                });
+
+        //The broker sends a retained message once the subscription is ready, use it as a probe
+        broker.publish(getRoomTopic("probe@qiscus.com", 'r'), "0:probe".getBytes(UTF_8), 0, true);
+
+        QiscusChatRoom qiscusChatRoom = new QiscusChatRoom();
+        qiscusChatRoom.setId(ROOM_ID);
+        QiscusPusherApi.getInstance().listenRoom(qiscusChatRoom);
+        QiscusPusherApi.getInstance().connect();
+        idleUntil(() -> receiptCount > 0);
+        idleUntilSettled();
+        receiptCount = 0;
+    }
+
+    @After
+    public void tearDown() {
+        roomSubscription.unsubscribe();
+        QiscusChatRoom qiscusChatRoom = new QiscusChatRoom();
+        qiscusChatRoom.setId(ROOM_ID);
+        QiscusPusherApi.getInstance().unListenRoom(qiscusChatRoom);
+        QiscusPusherApi.getInstance().disconnect();
+        ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Comments are never dropped nor reordered, a redelivered comment is only counted
+     */
+    @Test
+    public void commentBurst() throws Exception {
+        Burst burst = new Burst("comments", COMMENT_COUNT + 1);
+        for (int i = 1; i <= COMMENT_COUNT; i++) {
+            broker.publish(qiscusAccount.getToken() + "/c", createComment(i), 1, false);
+        }
+        broker.publish(qiscusAccount.getToken() + "/c", createComment(1), 1, false);
+        burst.finish();
+
+        burst.assertAccounted();
+        burst.assertBounded(MAX_COMMENT_ALLOCATION);
+        assertEquals(1, burst.after.getDuplicateCount() - burst.before.getDuplicateCount());
+        assertEquals(0, burst.after.getDroppedCount() - burst.before.getDroppedCount());
+        assertEquals(COMMENT_COUNT, receivedCommentIds.size());
+        for (int i = 0; i < COMMENT_COUNT; i++) {
+            assertEquals(i + 1, (int) receivedCommentIds.get(i));
+        }
+    }
+
+    /**
+     * Typing is coalesced per user, the latest state of everyone always comes through
+     */
+    @Test
+    public void typingBursts() throws Exception {
+        for (int b = 0; b < BURST_COUNT; b++) {
+            Map<String, Boolean> lastTypingStates = new HashMap<>();
+            Burst burst = new Burst("typing " + (b + 1), BURST_SIZE);
+            for (int i = 0; i < BURST_SIZE; i++) {
+                String user = getUser(i);
+                boolean typing = (i / USER_COUNT + b) % 2 == 0;
+                broker.publish(getRoomTopic(user, 't'), (typing ? "1" : "0").getBytes(UTF_8), 0, false);
+                lastTypingStates.put(user, typing);
+            }
+            burst.finish();
+
+            burst.assertAccounted();
+            burst.assertBounded(MAX_EVENT_ALLOCATION);
+            assertEquals(lastTypingStates, typingStates);
+        }
+    }
+
+    /**
+     * Receipts are delivered one by one
+     */
+    @Test
+    public void receiptBursts() throws Exception {
+        for (int b = 0; b < BURST_COUNT; b++) {
+            receiptCount = 0;
+            Burst burst = new Burst("receipts " + (b + 1), BURST_SIZE);
+            for (int i = 1; i <= BURST_SIZE; i++) {
+                int commentId = b * BURST_SIZE + i;
+                broker.publish(getRoomTopic(getUser(i), i % 2 == 0 ? 'r' : 'd'),
+                        (commentId + ":comment" + commentId).getBytes(UTF_8), 1, false);
+            }
+            burst.finish();
+
+            burst.assertAccounted();
+            burst.assertBounded(MAX_EVENT_ALLOCATION);
+            assertEquals(BURST_SIZE, burst.after.getDeliveredCount() - burst.before.getDeliveredCount());
+            assertEquals(BURST_SIZE, receiptCount);
+        }
+    }
+
+    private void onChatRoomEvent(QiscusChatRoomEvent event) {
+        switch (event.getEvent()) {
+            case TYPING:
+                typingStates.put(event.getUser(), event.isTyping());
+                break;
+            case DELIVERED:
+            case READ:
+                receiptCount++;
+                break;
+        }
+    }
+
+    private byte[] createComment(int id) {
+        JsonObject jsonObject = new JsonObject();
+        jsonObject.addProperty("id", id);
+        jsonObject.addProperty("topic_id", TOPIC_ID);
+        jsonObject.addProperty("room_id", ROOM_ID);
+        jsonObject.addProperty("unique_temp_id", "comment" + id);
+        jsonObject.addProperty("comment_before_id", id - 1);
+        jsonObject.addProperty("message", "Message " + id);
+        jsonObject.addProperty("username", qiscusAccount.getUsername());
+        //Our own comments, so the dispatcher does not report the delivery to the server
+        jsonObject.addProperty("email", qiscusAccount.getEmail());
+        jsonObject.addProperty("user_avatar", "");
+        jsonObject.addProperty("timestamp", "2017-05-01T10:00:00Z");
+        jsonObject.addProperty("room_name", "Test");
+        jsonObject.addProperty("chat_type", "single");
+        return jsonObject.toString().getBytes(UTF_8);
+    }
+
+    private static String getUser(int index) {
+        return "user" + (index % USER_COUNT) + "@qiscus.com";
+    }
+
+    private static String getRoomTopic(String user, char event) {
+        return "r/" + ROOM_ID + "/" + TOPIC_ID + "/" + user + "/" + event;
+    }
+
+    /**
+     * Run the main looper one frame at a time, messages of the MQTT service and the flushes of the dispatcher only
+     * happen there
+     */
+    private static void idleUntil(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.isMet()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timeout, " + QiscusPusherApi.getInstance().getRealtimeDispatchStats());
+            }
+            ShadowLooper.idleMainLooper(FRAME_MILLIS, TimeUnit.MILLISECONDS);
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * @return Stats once every received message has been delivered, coalesced, dropped or ignored as duplicate
+     */
+    private static QiscusRealtimeDispatchStats idleUntilSettled() throws InterruptedException {
+        idleUntil(() -> {
+            QiscusRealtimeDispatchStats stats = QiscusPusherApi.getInstance().getRealtimeDispatchStats();
+            return stats.getQueueSize() == 0 && stats.getReceivedCount() == stats.getDeliveredCount()
+                    + stats.getCoalescedCount() + stats.getDroppedCount() + stats.getDuplicateCount();
+        });
+        return QiscusPusherApi.getInstance().getRealtimeDispatchStats();
+    }
+
+    /**
+     * @return Bytes allocated so far by the thread which decodes the messages, -1 if the JVM can not tell
+     */
+    private static long getDispatcherAllocatedBytes() {
+        ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("qiscus_mqtt_dispatcher".equals(thread.getName())) {
+                return ((com.sun.management.ThreadMXBean) threadMXBean).getThreadAllocatedBytes(thread.getId());
+            }
+        }
+        return -1;
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    /**
+     * Stats, allocations and time of the messages published between its creation and {@link #finish()}
+     */
+    private static class Burst {
+        private final String name;
+        private final int size;
+        private final QiscusRealtimeDispatchStats before;
+        private final long allocatedBefore;
+        private final long startTime;
+        private QiscusRealtimeDispatchStats after;
+        private long allocatedBytes;
+
+        private Burst(String name, int size) {
+            this.name = name;
+            this.size = size;
+            before = QiscusPusherApi.getInstance().getRealtimeDispatchStats();
+            allocatedBefore = getDispatcherAllocatedBytes();
+            startTime = System.nanoTime();
+        }
+
+        private void finish() throws InterruptedException {
+            idleUntil(() -> QiscusPusherApi.getInstance().getRealtimeDispatchStats().getReceivedCount()
+                    >= before.getReceivedCount() + size);
+            after = idleUntilSettled();
+            long elapsed = Math.max(1, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startTime));
+            long allocatedAfter = getDispatcherAllocatedBytes();
+            allocatedBytes = allocatedBefore < 0 || allocatedAfter < 0 ? -1 : allocatedAfter - allocatedBefore;
+
+            LOGGER.info(name + ": " + size + " messages in " + elapsed + " ms (" + (size * 1000L / elapsed)
+                    + " msg/s), delivered " + (after.getDeliveredCount() - before.getDeliveredCount())
+                    + ", coalesced " + (after.getCoalescedCount() - before.getCoalescedCount())
+                    + ", dropped " + (after.getDroppedCount() - before.getDroppedCount())
+                    + ", allocated " + (allocatedBytes < 0 ? "unknown" : allocatedBytes / size + " bytes/message")
+                    + ", " + after);
+        }
+
+        /**
+         * Every received message is either delivered, coalesced into a newer one, dropped or ignored as duplicate
+         */
+        private void assertAccounted() {
+            assertEquals(size, after.getReceivedCount() - before.getReceivedCount());
+            assertEquals(size, (after.getDeliveredCount() - before.getDeliveredCount())
+                    + (after.getCoalescedCount() - before.getCoalescedCount())
+                    + (after.getDroppedCount() - before.getDroppedCount())
+                    + (after.getDuplicateCount() - before.getDuplicateCount()));
+            assertEquals(0, after.getQueueSize());
+        }
+
+        private void assertBounded(long maxAllocationPerMessage) {
+            assertTrue(name + " max latency " + after.getMaxLatency(), after.getMaxLatency() < MAX_LATENCY);
+            if (allocatedBytes >= 0) {
+                assertTrue(name + " allocated " + allocatedBytes / size + " bytes/message",
+                        allocatedBytes / size <= maxAllocationPerMessage);
+            }
+        }
+    }
+}